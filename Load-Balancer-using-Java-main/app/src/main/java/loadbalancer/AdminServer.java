@@ -0,0 +1,257 @@
+package loadbalancer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Small HTTP admin endpoint on the JDK's built-in server, so the balancer can be run
+ * and controlled without the Swing panel.
+ *
+ * Reads (GET /metrics, /servers, /status) only format the last MetricsSnapshot, so a
+ * scrape never locks a queue or touches a live recorder. Control calls go through the
+ * same LoadBalancer methods as the panel buttons.
+ *
+ * There is no authentication, so the endpoint binds to loopback unless -Dlb.admin.bind
+ * says otherwise, and the control calls (POST, PUT, DELETE) answer 403 unless
+ * -Dlb.admin.control=true. Reads are always served.
+ *
+ *   GET    /metrics                   Prometheus text format
+ *   GET    /status                    balancer summary and all servers (JSON)
+ *   GET    /servers                   server rows (JSON)
+ *   POST   /servers[?upstream=h:p]    start one server (proxy mode: forward to the given upstream)
+ *   DELETE /servers[/{id}]            retire the newest server, or the given one
+ *   GET    /algorithm                 current and available algorithms
+ *   PUT    /algorithm?name=P2C        switch algorithm
+ *   PUT    /autoscaling?enabled=true  turn the auto-scaler on or off
+ */
+public class AdminServer {
+
+    private static final String JSON = "application/json";
+    private static final String PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final String bindAddress;
+    private final int port;
+    private final boolean control;
+    private HttpServer http;
+
+    /**
+     * Creates an admin endpoint for the given address and port. Control calls are
+     * refused unless control is true.
+     */
+    public AdminServer(String bindAddress, int port, boolean control) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.control = control;
+    }
+
+    /**
+     * Binds the port and starts serving on one daemon thread.
+     */
+    public void start() throws IOException {
+        http = HttpServer.create(new InetSocketAddress(bindAddress, port), 16);
+        http.createContext("/metrics", ex -> handle(ex, this::metrics));
+        http.createContext("/status", ex -> handle(ex, this::status));
+        http.createContext("/servers", ex -> handle(ex, this::servers));
+        http.createContext("/algorithm", ex -> handle(ex, this::algorithm));
+        http.createContext("/autoscaling", ex -> handle(ex, this::autoScaling));
+        http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Admin");
+            t.setDaemon(true);
+            return t;
+        }));
+        http.start();
+    }
+
+    /**
+     * Stops the endpoint, waiting at most one second for open exchanges.
+     */
+    public void shutdown() {
+        http.stop(1);
+    }
+
+    // ================= Handlers =================
+
+    private interface Handler {
+        void handle(HttpExchange ex) throws IOException;
+    }
+
+    private static void handle(HttpExchange ex, Handler handler) throws IOException {
+        try {
+            handler.handle(ex);
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, JSON, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            Log.warn("Admin request failed: " + e);
+            send(ex, 500, JSON, error(String.valueOf(e.getMessage())));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void metrics(HttpExchange ex) throws IOException {
+        if (!allow(ex, "GET")) {
+            return;
+        }
+        send(ex, 200, PROMETHEUS, Metrics.snapshot().toPrometheus());
+    }
+
+    private void status(HttpExchange ex) throws IOException {
+        if (!allow(ex, "GET")) {
+            return;
+        }
+        send(ex, 200, JSON, Metrics.snapshot().toJson());
+    }
+
+    private void servers(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        String path = ex.getRequestURI().getPath();
+        String rest = path.length() > "/servers".length() ? path.substring("/servers/".length()) : "";
+
+        if ("GET".equals(method) && rest.isEmpty()) {
+            send(ex, 200, JSON, Metrics.snapshot().serversJson());
+        } else if ("POST".equals(method) && rest.isEmpty()) {
+            if (!allowControl(ex)) {
+                return;
+            }
+            String upstream = param(ex, "upstream");
+            if (upstream != null && !LoadBalancer.isProxyMode()) {
+                throw new IllegalArgumentException("upstream is only valid in proxy mode");
+            }
+            Server s = upstream != null
+                    ? LoadBalancer.addUpstream(ReverseProxy.parseUpstreams(upstream).get(0))
+                    : LoadBalancer.addServer();
+            if (s == null) {
+                send(ex, 409, JSON, error("No spare upstream; pass ?upstream=host:port"));
+                return;
+            }
+            LoadBalancer.updateUILabels();
+            send(ex, 201, JSON, serverJson(s));
+        } else if ("DELETE".equals(method)) {
+            if (!allowControl(ex)) {
+                return;
+            }
+            // The registry refuses to retire the last active server, even when racing the auto-scaler
+            Server s = rest.isEmpty() ? LoadBalancer.removeServer() : LoadBalancer.removeServer(parseId(rest));
+            if (s == null && LoadBalancer.registry.active().size() <= 1) {
+                send(ex, 409, JSON, error("There must be at least 1 active server"));
+                return;
+            }
+            if (s == null) {
+                send(ex, 404, JSON, error("No active server " + rest));
+                return;
+            }
+            LoadBalancer.updateUILabels();
+            send(ex, 200, JSON, serverJson(s));
+        } else {
+            send(ex, 405, JSON, error("Method not allowed"));
+        }
+    }
+
+    private void algorithm(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        if ("PUT".equals(method) || "POST".equals(method)) {
+            if (!allowControl(ex)) {
+                return;
+            }
+            String name = param(ex, "name");
+            if (name == null) {
+                throw new IllegalArgumentException("Missing parameter: name");
+            }
+            LoadBalancer.setAlgorithm(name);
+        } else if (!"GET".equals(method)) {
+            send(ex, 405, JSON, error("Method not allowed"));
+            return;
+        }
+        StringBuilder sb = new StringBuilder("{\"algorithm\":\"")
+                .append(BalancingStrategies.current().getName()).append("\",\"available\":[");
+        String[] names = BalancingStrategies.names();
+        for (int i = 0; i < names.length; i++) {
+            sb.append(i > 0 ? "," : "").append('"').append(names[i]).append('"');
+        }
+        send(ex, 200, JSON, sb.append("]}").toString());
+    }
+
+    private void autoScaling(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        if ("PUT".equals(method) || "POST".equals(method)) {
+            if (!allowControl(ex)) {
+                return;
+            }
+            String enabled = param(ex, "enabled");
+            if (!"true".equals(enabled) && !"false".equals(enabled)) {
+                throw new IllegalArgumentException("Parameter enabled must be true or false");
+            }
+            LoadBalancer.setAutoScalingEnabled(Boolean.parseBoolean(enabled));
+        } else if (!"GET".equals(method)) {
+            send(ex, 405, JSON, error("Method not allowed"));
+            return;
+        }
+        send(ex, 200, JSON, "{\"autoScaling\":" + LoadBalancer.isAutoScalingEnabled() + "}");
+    }
+
+    // ================= Helpers =================
+
+    private static boolean allow(HttpExchange ex, String method) throws IOException {
+        if (method.equals(ex.getRequestMethod())) {
+            return true;
+        }
+        send(ex, 405, JSON, error("Method not allowed"));
+        return false;
+    }
+
+    private boolean allowControl(HttpExchange ex) throws IOException {
+        if (control) {
+            return true;
+        }
+        send(ex, 403, JSON, error("Control is disabled; start with -Dlb.admin.control=true"));
+        return false;
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad server id: " + text);
+        }
+    }
+
+    private static String param(HttpExchange ex, String name) {
+        String query = ex.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String serverJson(Server s) {
+        return "{\"id\":" + s.getServerId() + ",\"weight\":" + s.getWeight()
+                + (s.getUpstream() != null ? ",\"upstream\":\"" + MetricsSnapshot.hostPort(s.getUpstream()) + "\"" : "")
+                + ",\"status\":\"" + s.getStatus() + "\"}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    private static void send(HttpExchange ex, int code, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
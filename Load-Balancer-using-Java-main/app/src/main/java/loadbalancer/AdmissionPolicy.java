@@ -0,0 +1,47 @@
+package loadbalancer;
+
+/**
+ * What a bounded RequestQueue does under overload.
+ * Chosen with -Dlb.queue.policy=reject|drop-oldest|codel.
+ */
+public enum AdmissionPolicy {
+
+    /** A full queue refuses new requests; ingress answers the client with a busy byte. */
+    REJECT("reject"),
+
+    /** A full queue sheds its oldest request to make room for the new one. */
+    DROP_OLDEST("drop-oldest"),
+
+    /** Like REJECT when full, plus CoDel sheds requests that waited too long while the queue stays backed up. */
+    CODEL("codel");
+
+    private final String propertyValue;
+
+    AdmissionPolicy(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    /**
+     * Policy chosen by -Dlb.queue.policy (default reject).
+     */
+    public static AdmissionPolicy configured() {
+        return parse(System.getProperty("lb.queue.policy", "reject"));
+    }
+
+    /**
+     * Looks a policy up by its property value.
+     */
+    public static AdmissionPolicy parse(String value) {
+        for (AdmissionPolicy policy : values()) {
+            if (policy.propertyValue.equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown queue policy: " + value);
+    }
+
+    @Override
+    public String toString() {
+        return propertyValue;
+    }
+}
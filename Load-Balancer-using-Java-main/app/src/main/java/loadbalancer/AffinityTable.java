@@ -0,0 +1,172 @@
+package loadbalancer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded client IP -> server id table for session affinity (see StickyStrategy).
+ *
+ * Laid out like RateLimiter: one primitive long[] of [key, value] pairs, set-associative
+ * with WAYS slots per set, so a lookup is one hash and at most WAYS reads, and nothing
+ * is allocated. The value packs the server id with the time the client was last seen
+ * (milliseconds, 32 bits, compared with wrap-around arithmetic). An entry not seen for
+ * the TTL is expired: lookups ignore it and the next pin in its set reuses it. A pin into
+ * a set with no free or expired slot evicts the least recently seen entry of that set,
+ * an LRU bounded to WAYS candidates. Hits refresh the last-seen time at most once per
+ * TTL / 16, so hot clients do not write their cache line on every request.
+ *
+ * A pin takes a slot the way RateLimiter does: it CASes the victim's value from the one
+ * it saw to CLAIMING (no server), swaps in its key and then publishes its value. A slot
+ * used or taken since is left alone, and a lookup racing the hand-over sees no server and
+ * goes to the fallback strategy, never to the evicted client's server.
+ */
+final class AffinityTable {
+
+    static final int NONE = 0;                              // server ids start at 1
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int WAYS = 8;
+    private static final long OCCUPIED = 1L << 32;          // key = OCCUPIED | unsigned IP; 0 = free
+    private static final long CLAIMING = 0xFFFFFFFFL;       // value of a slot changing hands: no server
+    private static final int HASH_SEED = 0x53544B59;
+
+    private final long[] table;                             // [key, serverId << 32 | lastSeenMillis] per slot
+    private final int setMask;
+    private final int ttlMillis;
+    private final int touchMillis;
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    AffinityTable(int capacity, long ttlMillis) {
+        int slots = Integer.highestOneBit(Math.max(WAYS, Math.min(capacity, 1 << 26)) - 1) << 1;
+        this.table = new long[slots * 2];
+        this.setMask = slots / WAYS - 1;
+        this.ttlMillis = (int) Math.max(1, Math.min(ttlMillis, Integer.MAX_VALUE / 2));
+        this.touchMillis = Math.max(1, this.ttlMillis / 16);
+    }
+
+    /**
+     * Returns the server the client is pinned to, or NONE if it has no live entry.
+     * nowNanos is a System.nanoTime() (or simulated) timestamp.
+     */
+    int lookup(int packedIP, long nowNanos) {
+        long key = key(packedIP);
+        int now = millis(nowNanos);
+        int set = set(packedIP);
+        for (int i = set; i < set + WAYS * 2; i += 2) {
+            if ((long) SLOT.getAcquire(table, i) != key) {
+                continue;
+            }
+            long value = (long) SLOT.getAcquire(table, i + 1);
+            int serverId = (int) (value >>> 32);
+            int age = now - (int) value;
+            if (serverId == NONE || (long) SLOT.getAcquire(table, i) != key) {
+                return NONE;                                // expired, or handed to another client
+            }
+            if (age > ttlMillis) {
+                if (SLOT.compareAndSet(table, i + 1, value, 0L)) {
+                    expirations.increment();
+                }
+                return NONE;
+            }
+            if (age >= touchMillis) {
+                SLOT.compareAndSet(table, i + 1, value, value(serverId, now));
+            }
+            return serverId;
+        }
+        return NONE;
+    }
+
+    /**
+     * Pins the client to a server, replacing its entry if it has one.
+     */
+    void pin(int packedIP, int serverId, long nowNanos) {
+        long key = key(packedIP);
+        int now = millis(nowNanos);
+        int set = set(packedIP);
+        int victim = -1;
+        int victimAge = Integer.MIN_VALUE;
+        long seen = 0;
+        for (int i = set; i < set + WAYS * 2; i += 2) {
+            // Value before key: a hand-over swaps the key before it publishes the value
+            long value = (long) SLOT.getAcquire(table, i + 1);
+            long k = (long) SLOT.getAcquire(table, i);
+            if (k == key) {
+                if (value != CLAIMING) {
+                    SLOT.compareAndSet(table, i + 1, value, value(serverId, now));
+                }
+                return;                                     // if the slot changed meanwhile, retried next request
+            }
+            if (value == CLAIMING) {
+                continue;
+            }
+            int age = k == 0 || (value >>> 32) == NONE ? Integer.MAX_VALUE : now - (int) value;
+            if (age > victimAge) {
+                victimAge = age;
+                victim = i;
+                seen = value;
+            }
+        }
+        if (victim < 0 || !SLOT.compareAndSet(table, victim + 1, seen, CLAIMING)) {
+            return;                                         // lost the slot to another pin; retried next request
+        }
+        long previous;
+        do {
+            previous = (long) SLOT.getAcquire(table, victim);
+        } while (!SLOT.compareAndSet(table, victim, previous, key));
+        SLOT.setRelease(table, victim + 1, value(serverId, now));
+        if (previous == 0) {
+            entries.increment();
+        } else if (victimAge > ttlMillis) {
+            expirations.increment();
+        } else if (victimAge != Integer.MAX_VALUE) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Slots holding a client (live or expired but not yet reused).
+     */
+    long getEntries() {
+        return entries.sum();
+    }
+
+    /**
+     * Live clients pushed out of a full set by a new one.
+     */
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Entries dropped because the client was not seen for the TTL.
+     */
+    long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * Heap size of the table itself.
+     */
+    long getBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private int set(int packedIP) {
+        return (Hashing.murmur3(packedIP, HASH_SEED) & setMask) * WAYS * 2;
+    }
+
+    private static long key(int packedIP) {
+        return OCCUPIED | (packedIP & 0xFFFFFFFFL);
+    }
+
+    private static long value(int serverId, int millis) {
+        return ((long) serverId << 32) | (millis & 0xFFFFFFFFL);
+    }
+
+    private static int millis(long nanos) {
+        return (int) (nanos / 1_000_000L);
+    }
+}
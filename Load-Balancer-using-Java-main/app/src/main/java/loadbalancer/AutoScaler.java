@@ -0,0 +1,260 @@
+package loadbalancer;
+
+import java.util.List;
+
+/**
+ * Predictive auto-scaler.
+ *
+ * Every -Dlb.autoscale.intervalMs it computes the number of servers needed instead of
+ * nudging the count by one. By Little's law the requests in service are arrival rate ×
+ * service time; each server holds getConcurrencyLimit() of them at the target utilisation,
+ * and any queued backlog must be worked off within the horizon on top of that:
+ *
+ *   target = ceil((rate × S + queued × S / horizon) / (slots × targetUtilization))
+ *
+ * S is the mean service time of the requests the servers finished in the last metrics
+ * interval (ServerMetrics). The peak EWMA the strategies route on is biased high on
+ * purpose and would over-provision here, so it only stands in before anything has
+ * completed. With forecasting on, the rate is the larger of
+ * the current one and a Holt (level + trend) projection one horizon ahead, so capacity is
+ * added while load is still climbing. Queue-delay p99 above target blocks any scale-in and
+ * forces growth. The change is applied in steps of up to lb.autoscale.maxStep servers,
+ * bounded by min/max and separate cooldowns for scaling up and down.
+ */
+public class AutoScaler {
+
+    // ====== Config ======
+    static final long INTERVAL_MS = Long.getLong("lb.autoscale.intervalMs", 1000L);
+    private static final int MIN_SERVERS = Integer.getInteger("lb.autoscale.minServers", 1);
+    private static final int MAX_SERVERS = Integer.getInteger("lb.autoscale.maxServers", 10);
+    private static final int MAX_STEP = Integer.getInteger("lb.autoscale.maxStep", 4);
+    private static final double TARGET_UTILIZATION =
+            Double.parseDouble(System.getProperty("lb.autoscale.targetUtilization", "0.7"));
+    private static final long QUEUE_DELAY_TARGET_NANOS =
+            Long.getLong("lb.autoscale.queueDelayTargetMs", 250L) * 1_000_000L;
+    private static final long UP_COOLDOWN_NANOS = Long.getLong("lb.autoscale.upCooldownMs", 3000L) * 1_000_000L;
+    private static final long DOWN_COOLDOWN_NANOS = Long.getLong("lb.autoscale.downCooldownMs", 15000L) * 1_000_000L;
+    private static final boolean FORECAST =
+            Boolean.parseBoolean(System.getProperty("lb.autoscale.forecast", "true"));
+    private static final long HORIZON_MS = Long.getLong("lb.autoscale.horizonMs", 5000L);
+
+    // Holt's linear smoothing factors for the arrival rate
+    private static final double LEVEL_ALPHA = 0.5;
+    private static final double TREND_BETA = 0.3;
+
+    private final Runnable onScaled;
+    private volatile boolean enabled;
+
+    // ====== Scaler thread state ======
+    private long lastReceived;
+    private long lastTickNanos;
+    private double level = Double.NaN;
+    private double trend;
+    private long lastUpNanos;
+    private long lastDownNanos;
+
+    /**
+     * Creates a scaler; onScaled runs after every change in server count.
+     */
+    public AutoScaler(Runnable onScaled) {
+        this.onScaled = onScaled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the scaler thread. Arrival rate is tracked even while disabled,
+     * so the forecast is warm the moment scaling is switched on.
+     */
+    public void start() {
+        reset(System.nanoTime(), Metrics.getReceived());
+
+        new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    Log.info("[AutoScaler] Interrupted");
+                    return;
+                }
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    Log.error("AutoScaler error: " + e.getMessage());
+                }
+            }
+        }, "AutoScaler").start();
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        double rate = observe(now, Metrics.getReceived());
+
+        if (!enabled) {
+            return;
+        }
+
+        List<Server> servers = LoadBalancer.registry.active();
+        int current = servers.size();
+        if (current == 0) {
+            return;
+        }
+
+        int queued = 0;
+        long queueDelayP99 = 0;
+        for (Server s : servers) {
+            queued += s.getQueuedRequests();
+            queueDelayP99 = Math.max(queueDelayP99, s.getMetrics().getQueueWait().getInterval().getP99());
+        }
+        double serviceSeconds = meanServiceSeconds(servers);
+        int target = target(servers, rate, queued, queueDelayP99, serviceSeconds);
+
+        if (Log.isDebugEnabled()) {
+            Log.debug(String.format("[AutoScaler] rate %.0f req/s (forecast %.0f), service %.0f ms, queued %d, "
+                            + "queue p99 %d ms -> target %d (have %d)",
+                    rate, forecast(), serviceSeconds * 1000, queued, queueDelayP99 / 1_000_000, target, current));
+        }
+
+        int step = step(target, current, queueDelayP99, now);
+        if (step > 0) {
+            for (int i = 0; i < step; i++) {
+                Server s = LoadBalancer.addServer();
+                if (s == null) {
+                    break;                                   // proxy mode: no spare upstream left
+                }
+                Log.info("[AutoScaler] Added Server " + s.getServerId());
+            }
+            onScaled.run();
+        } else if (step < 0) {
+            for (int i = 0; i < -step; i++) {
+                Server s = LoadBalancer.removeServer();
+                if (s != null) {
+                    Log.info("[AutoScaler] Removed Server " + s.getServerId());
+                }
+            }
+            onScaled.run();
+        }
+    }
+
+    // ====== Decision steps (also driven by the Simulator on its virtual clock) ======
+
+    /**
+     * Starts measuring from the given time and arrival count, with both cooldowns expired.
+     */
+    void reset(long nowNanos, long received) {
+        lastReceived = received;
+        lastTickNanos = nowNanos;
+        lastUpNanos = nowNanos - UP_COOLDOWN_NANOS;
+        lastDownNanos = nowNanos - DOWN_COOLDOWN_NANOS;
+    }
+
+    /**
+     * Closes one interval: returns the arrival rate (req/s) since the last call and feeds
+     * it into the forecast.
+     */
+    double observe(long nowNanos, long received) {
+        double rate = (received - lastReceived) * 1e9 / Math.max(1, nowNanos - lastTickNanos);
+        lastReceived = received;
+        lastTickNanos = nowNanos;
+        observeRate(rate);
+        return rate;
+    }
+
+    /**
+     * Number of servers needed for the demand (Little's law, see class comment), raised
+     * by one if queue-delay p99 is above target, within min/max. servers must not be empty;
+     * serviceSeconds is the mean service time S.
+     */
+    int target(List<Server> servers, double rate, int queued, long queueDelayP99Nanos, double serviceSeconds) {
+        int current = servers.size();
+        int slots = 0;
+        for (Server s : servers) {
+            slots += s.getConcurrencyLimit();
+        }
+        double slotsPerServer = slots / (double) current;
+
+        double demand = FORECAST ? Math.max(rate, forecast()) : rate;
+        double busySlots = demand * serviceSeconds + queued * serviceSeconds / (HORIZON_MS / 1000.0);
+        int target = (int) Math.ceil(busySlots / (slotsPerServer * TARGET_UTILIZATION));
+
+        if (queueDelayP99Nanos > QUEUE_DELAY_TARGET_NANOS) {
+            target = Math.max(target, current + 1);
+        }
+        return Math.max(MIN_SERVERS, Math.min(MAX_SERVERS, target));
+    }
+
+    /**
+     * Applies cooldowns and the step limit. Returns how many servers to add (positive) or
+     * remove (negative), and remembers the time of any change.
+     */
+    int step(int target, int current, long queueDelayP99Nanos, long nowNanos) {
+        boolean queuesBuilding = queueDelayP99Nanos > QUEUE_DELAY_TARGET_NANOS;
+        if (target > current && nowNanos - lastUpNanos >= UP_COOLDOWN_NANOS) {
+            lastUpNanos = nowNanos;
+            return Math.min(MAX_STEP, target - current);
+        }
+        if (target < current && !queuesBuilding
+                && nowNanos - lastDownNanos >= DOWN_COOLDOWN_NANOS && nowNanos - lastUpNanos >= DOWN_COOLDOWN_NANOS) {
+            lastDownNanos = nowNanos;
+            return -Math.min(MAX_STEP, current - target);
+        }
+        return 0;
+    }
+
+    /**
+     * Mean service time in seconds of the requests the servers finished in the last
+     * metrics interval, weighted by count; peakServiceSeconds() if none finished.
+     */
+    private static double meanServiceSeconds(List<Server> servers) {
+        long count = 0;
+        double totalNanos = 0;
+        for (Server s : servers) {
+            LatencyStats interval = s.getMetrics().getServiceTime().getInterval();
+            count += interval.getCount();
+            totalNanos += interval.getMean() * interval.getCount();
+        }
+        return count > 0 ? totalNanos / count / 1e9 : peakServiceSeconds(servers);
+    }
+
+    /**
+     * Average of the servers' peak-EWMA service times in seconds: biased high, only a
+     * stand-in while there are no completions to take the mean of.
+     */
+    static double peakServiceSeconds(List<Server> servers) {
+        double serviceSeconds = 0;
+        for (Server s : servers) {
+            serviceSeconds += s.getServiceTimeEwmaNanos() / 1e9;
+        }
+        return serviceSeconds / servers.size();
+    }
+
+    /**
+     * Holt's linear exponential smoothing of the arrival rate.
+     */
+    private void observeRate(double rate) {
+        if (Double.isNaN(level)) {
+            level = rate;
+            return;
+        }
+        double previous = level;
+        level = LEVEL_ALPHA * rate + (1 - LEVEL_ALPHA) * (level + trend);
+        trend = TREND_BETA * (level - previous) + (1 - TREND_BETA) * trend;
+    }
+
+    /**
+     * Arrival rate projected one horizon ahead (never negative).
+     */
+    private double forecast() {
+        if (Double.isNaN(level)) {
+            return 0;
+        }
+        double steps = HORIZON_MS / (double) INTERVAL_MS;
+        return Math.max(0, level + trend * steps);
+    }
+}
@@ -0,0 +1,129 @@
+package loadbalancer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Registry of the available balancing strategies and holder of the active one.
+ * Swapping is atomic: a new strategy is fully initialised before dispatchers can see it.
+ */
+public final class BalancingStrategies {
+
+    private static final Map<String, Supplier<BalancingStrategy>> FACTORIES = new LinkedHashMap<>();
+
+    static {
+        register("RoundRobin", RoundRobinStrategy::new);
+        register("LeastConnections", LeastConnectionsStrategy::new);
+        register("IPHashing", IPHashStrategy::new);
+        register("WeightedRoundRobin", WeightedRoundRobinStrategy::new);
+        register("Maglev", MaglevStrategy::new);
+        register("P2C", PowerOfTwoChoicesStrategy::new);
+        register("PeakEWMA", PeakEwmaStrategy::new);
+        register("SizeAware", SizeAwareStrategy::new);
+        register("Sticky", StickyStrategy::new);
+    }
+
+    private static final AtomicReference<BalancingStrategy> current =
+            new AtomicReference<>(new RoundRobinStrategy());
+
+    private static Random seeded;   // set by the single-threaded simulator only
+
+    private BalancingStrategies() {
+    }
+
+    /**
+     * Adds a strategy to the registry (shown in the "Change Algorithm" dialog).
+     */
+    public static synchronized void register(String name, Supplier<BalancingStrategy> factory) {
+        FACTORIES.put(name, factory);
+    }
+
+    /**
+     * Returns the registered strategy names in registration order.
+     */
+    public static synchronized String[] names() {
+        return FACTORIES.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Returns the active strategy.
+     */
+    public static BalancingStrategy current() {
+        return current.get();
+    }
+
+    /**
+     * Creates a new, not yet active instance of the named strategy.
+     */
+    public static BalancingStrategy create(String name) {
+        Supplier<BalancingStrategy> factory;
+        synchronized (BalancingStrategies.class) {
+            factory = FACTORIES.get(name);
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown algorithm: " + name);
+        }
+        return factory.get();
+    }
+
+    /**
+     * Creates the named strategy, primes it with the current servers and makes it active.
+     * Not serialised with membership changes on its own: the balancer goes through
+     * ServerRegistry.activateStrategy(), which is.
+     */
+    public static void activate(String name, List<Server> servers) {
+        BalancingStrategy strategy = create(name);
+        strategy.onServersChanged(servers);
+        current.set(strategy);
+    }
+
+    /**
+     * Random source for strategies that sample servers: ThreadLocalRandom in the balancer,
+     * the simulator's seeded generator during a simulation run (so runs are repeatable).
+     */
+    static Random random() {
+        Random random = seeded;
+        return random != null ? random : ThreadLocalRandom.current();
+    }
+
+    /**
+     * Power of two choices over servers[from .. to): samples two distinct servers from
+     * random() and returns the one with the lower cost (the first on a tie).
+     */
+    static Server cheaperOfTwo(List<Server> servers, int from, int to, ToDoubleFunction<Server> cost) {
+        int n = to - from;
+        if (n == 1) {
+            return servers.get(from);
+        }
+        Random random = random();
+        int a = random.nextInt(n);
+        int b = random.nextInt(n - 1);
+        if (b >= a) {
+            b++;                                            // uniform over the other n - 1
+        }
+        Server first = servers.get(from + a);
+        Server second = servers.get(from + b);
+        return cost.applyAsDouble(second) < cost.applyAsDouble(first) ? second : first;
+    }
+
+    /**
+     * Makes random() return the given generator (null restores ThreadLocalRandom).
+     * Only for the simulator, which runs all strategy calls on one thread.
+     */
+    static void seed(Random random) {
+        seeded = random;
+    }
+
+    /**
+     * Tells the active strategy that the server set changed.
+     */
+    public static void serversChanged(List<Server> servers) {
+        current.get().onServersChanged(servers);
+    }
+}
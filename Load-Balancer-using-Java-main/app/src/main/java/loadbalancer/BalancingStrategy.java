@@ -0,0 +1,61 @@
+package loadbalancer;
+
+import java.util.List;
+
+/**
+ * Server selection algorithm used by the dispatcher workers.
+ *
+ * Implementations must be safe to call from several dispatcher threads at once.
+ * The active strategy is held by BalancingStrategies and can be swapped at runtime;
+ * a strategy is told about the current servers before it is published.
+ */
+public interface BalancingStrategy {
+
+    /**
+     * Name shown in the control panel.
+     */
+    String getName();
+
+    /**
+     * Picks the server for a request. The list is never empty.
+     */
+    Server select(UserRequest request, List<Server> servers);
+
+    /**
+     * Returns true if the strategy pins clients to servers (affinity).
+     * Requests it places are never moved to another server by work stealing.
+     */
+    default boolean isSticky() {
+        return false;
+    }
+
+    /**
+     * Called after a server was added or removed (and once before the strategy goes live).
+     */
+    default void onServersChanged(List<Server> servers) {
+    }
+
+    /**
+     * Called after a request was handed to a server.
+     */
+    default void onRequestQueued(Server server) {
+    }
+
+    /**
+     * Called by a server after it shed a queued request without serving it.
+     */
+    default void onRequestDropped(Server server) {
+    }
+
+    /**
+     * Called after an idle server took a queued request from a peer.
+     */
+    default void onRequestStolen(Server from, Server to) {
+    }
+
+    /**
+     * Called by a server after it finished a request.
+     */
+    default void onRequestCompleted(Server server, long serviceTimeNanos) {
+    }
+}
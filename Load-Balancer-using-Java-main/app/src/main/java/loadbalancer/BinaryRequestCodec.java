@@ -0,0 +1,46 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary format: the payload is the IPv4 address packed into an int
+ * followed by the request size. 12 bytes per request including the length prefix,
+ * no object graph and nothing to deserialize reflectively.
+ */
+public final class BinaryRequestCodec implements RequestCodec {
+
+    public static final BinaryRequestCodec INSTANCE = new BinaryRequestCodec();
+
+    public static final int PAYLOAD_LENGTH = 8;
+    public static final int FRAME_LENGTH = WireProtocol.FRAME_HEADER_LENGTH + PAYLOAD_LENGTH;
+
+    private BinaryRequestCodec() {
+    }
+
+    @Override
+    public byte format() {
+        return WireProtocol.FORMAT_BINARY;
+    }
+
+    @Override
+    public boolean encode(UserRequest request, ByteBuffer out) {
+        if (out.remaining() < FRAME_LENGTH) {
+            return false;
+        }
+        out.putInt(PAYLOAD_LENGTH);
+        out.putInt(request.getPackedIP());
+        out.putInt(request.getRequestSize());
+        return true;
+    }
+
+    @Override
+    public UserRequest decode(ByteBuffer in, int length) throws IOException {
+        if (length != PAYLOAD_LENGTH) {
+            throw new IOException("bad binary payload length " + length);
+        }
+        int packedIP = in.getInt();
+        int requestSize = in.getInt();
+        return RequestPool.acquire(packedIP, requestSize);
+    }
+}
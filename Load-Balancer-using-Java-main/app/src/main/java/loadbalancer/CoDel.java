@@ -0,0 +1,63 @@
+package loadbalancer;
+
+/**
+ * Controlled-delay (CoDel) overload detector for request queues.
+ *
+ * A queue is overloaded when even its shortest queueing delay over a whole interval
+ * stayed above the target, i.e. the backlog never drained. While overloaded, requests
+ * that waited longer than twice the target are shed at dequeue instead of being served
+ * late; a queue that only bursts briefly is left alone. This is the variant used for
+ * RPC servers rather than packet queues: the decision is per request, not a drop rate.
+ */
+public class CoDel {
+
+    // ====== Config ======
+    private static final long DEFAULT_TARGET_NANOS = Long.getLong("lb.codel.targetMs", 100L) * 1_000_000L;
+    private static final long DEFAULT_INTERVAL_NANOS = Long.getLong("lb.codel.intervalMs", 1000L) * 1_000_000L;
+
+    private final long targetNanos;
+    private final long intervalNanos;
+
+    private long intervalEnd;
+    private long minDelayNanos = Long.MAX_VALUE;
+    private boolean overloaded;
+
+    /**
+     * Creates a detector using -Dlb.codel.targetMs and -Dlb.codel.intervalMs.
+     */
+    public CoDel() {
+        this(DEFAULT_TARGET_NANOS, DEFAULT_INTERVAL_NANOS);
+    }
+
+    /**
+     * Creates a detector with the given target delay and interval.
+     */
+    public CoDel(long targetNanos, long intervalNanos) {
+        this.targetNanos = targetNanos;
+        this.intervalNanos = intervalNanos;
+        this.intervalEnd = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Called for every dequeued request. Returns true if it should be shed.
+     */
+    public synchronized boolean shouldShed(long queueDelayNanos, long nowNanos) {
+        if (nowNanos - intervalEnd >= 0) {
+            // No samples in the last interval means the queue sat empty: not overloaded
+            overloaded = minDelayNanos != Long.MAX_VALUE && minDelayNanos > targetNanos;
+            minDelayNanos = Long.MAX_VALUE;
+            intervalEnd = nowNanos + intervalNanos;
+        }
+        if (queueDelayNanos < minDelayNanos) {
+            minDelayNanos = queueDelayNanos;
+        }
+        return overloaded && queueDelayNanos > 2 * targetNanos;
+    }
+
+    /**
+     * Returns true if the last full interval was overloaded.
+     */
+    public synchronized boolean isOverloaded() {
+        return overloaded;
+    }
+}
@@ -0,0 +1,205 @@
+package loadbalancer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded dispatcher. Ingress is split into shards, each drained by its own
+ * dispatcher worker, so dispatch throughput scales with cores instead of one thread.
+ *
+ * Server choice is delegated to the active BalancingStrategy, which must be safe
+ * for concurrent callers; the built-in ones share lock-free state where they can
+ * (atomic cursors, each server's atomic connection counter).
+ * A persistent connection always feeds the same shard, so its requests keep their order.
+ * Shards are bounded RequestQueues (-Dlb.queue.capacity, -Dlb.queue.policy); a request
+ * the chosen server cannot queue is rejected rather than parked.
+ *
+ * Workers dispatch in batches: each drains whatever its shard holds (up to
+ * -Dlb.dispatch.batch) in one lock hold, picks a server for every request, and hands
+ * each server its share in one queue operation. A lone request is never held back to
+ * fill a batch, so batching only kicks in when requests are already waiting.
+ */
+public class Dispatcher {
+
+    // ====== Config ======
+    private static final int SHARD_CAPACITY = Integer.getInteger("lb.queue.capacity", 65536);
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger("lb.dispatch.batch", 64));
+
+    private final RequestQueue[] shards;
+    private final Thread[] workers;
+
+    private final AtomicLong nextShard = new AtomicLong();
+
+    /**
+     * Creates a dispatcher with the given number of shards (one worker per shard).
+     */
+    public Dispatcher(int shardCount) {
+        int n = Math.max(1, shardCount);
+        AdmissionPolicy policy = AdmissionPolicy.configured();
+        this.shards = new RequestQueue[n];
+        this.workers = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            shards[i] = new RequestQueue(SHARD_CAPACITY, policy, UserRequest::getIngressNanos, RequestPool::release);
+        }
+    }
+
+    /**
+     * Starts one worker thread per shard.
+     */
+    public void start() {
+        for (int i = 0; i < shards.length; i++) {
+            RequestQueue shard = shards[i];
+            workers[i] = new Thread(() -> dispatchLoop(shard), "Dispatcher-" + i);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns a shard index for a new ingress source (round-robin).
+     */
+    public int assignShard() {
+        return (int) (nextShard.getAndIncrement() % shards.length);
+    }
+
+    /**
+     * Queues a request on the given shard. Returns false if the shard was full and rejected it.
+     */
+    public boolean submit(UserRequest request, int shard) {
+        return shards[shard].offer(request);
+    }
+
+    /**
+     * Re-routes an already admitted request (e.g. from a draining server) through any shard.
+     * Returns false if that shard has no room.
+     */
+    public boolean resubmit(UserRequest request) {
+        return shards[assignShard()].tryOffer(request);
+    }
+
+    /**
+     * Returns the number of requests waiting in all shards.
+     */
+    public int getQueuedRequests() {
+        int total = 0;
+        for (RequestQueue shard : shards) {
+            total += shard.size();
+        }
+        return total;
+    }
+
+    private void dispatchLoop(RequestQueue shard) {
+        UserRequest[] batch = new UserRequest[BATCH_SIZE];
+        Server[] targets = new Server[BATCH_SIZE];
+        UserRequest[] group = new UserRequest[BATCH_SIZE];
+        while (true) {
+            try {
+                int n = shard.takeBatch(batch, BATCH_SIZE);
+                dispatchBatch(batch, targets, group, n);
+
+            } catch (InterruptedException e) {
+                Log.warn(Thread.currentThread().getName() + " interrupted.");
+                break;
+            } catch (Exception e) {
+                Log.error("Dispatcher error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Picks a server for every request of a batch, then hands each server its requests
+     * (in arrival order) with one addReserved() call. Servers are reserved as they are
+     * picked, so load-aware strategies see earlier picks of the same batch.
+     */
+    private void dispatchBatch(UserRequest[] batch, Server[] targets, UserRequest[] group, int n) {
+        List<Server> servers = LoadBalancer.registry.active();
+        if (servers.isEmpty()) {
+            for (int i = 0; i < n; i++) {
+                Log.warn("No available servers. Dropping request: " + batch[i]);
+                RequestPool.release(batch[i]);
+            }
+            Arrays.fill(batch, 0, n, null);
+            return;
+        }
+
+        BalancingStrategy strategy = BalancingStrategies.current();
+        boolean sticky = strategy.isSticky();
+        for (int i = 0; i < n; i++) {
+            UserRequest request = batch[i];
+            Server server = strategy.select(request, servers);
+            Metrics.recordDispatch(request);
+            request.setPinned(sticky);
+            server.reserve();
+            strategy.onRequestQueued(server);
+            targets[i] = server;
+        }
+
+        for (int i = 0; i < n; i++) {
+            Server server = targets[i];
+            if (server == null) {
+                continue;                            // already handed over with an earlier group
+            }
+            int size = 0;
+            for (int j = i; j < n; j++) {
+                if (targets[j] == server) {
+                    group[size++] = batch[j];
+                    targets[j] = null;
+                }
+            }
+            int accepted = server.addReserved(group, 0, size);
+            if (accepted > 0) {
+                LoadBalancer.onDispatched(accepted);
+                if (Log.isDebugEnabled()) {
+                    Log.debug(Thread.currentThread().getName() + " sent " + accepted + " requests to Server " + server.getServerId());
+                }
+            }
+            boolean rejected = server.getStatus() == Server.Status.ACTIVE;
+            for (int k = accepted; k < size; k++) {
+                strategy.onRequestDropped(server);
+                if (rejected || place(group[k]) == null) {
+                    RequestPool.release(group[k]);   // queue full (counted as rejected), or no servers left
+                } else {
+                    LoadBalancer.onDispatched(1);
+                }
+            }
+            Arrays.fill(group, 0, size, null);
+        }
+        Arrays.fill(batch, 0, n, null);
+    }
+
+    /**
+     * Hands a request to the server the active strategy picks from the current membership.
+     * Returns that server, or null if there are no servers or its queue rejected the request.
+     * A server removed between the snapshot read and the hand-off refuses the request,
+     * and the choice is made again from the new membership.
+     */
+    private Server place(UserRequest request) {
+        while (true) {
+            List<Server> servers = LoadBalancer.registry.active();
+            if (servers.isEmpty()) {
+                Log.warn("No available servers. Dropping request: " + request);
+                return null;
+            }
+
+            BalancingStrategy strategy = BalancingStrategies.current();
+            Server server = strategy.select(request, servers);
+            Metrics.recordDispatch(request);
+            request.setPinned(strategy.isSticky());
+            if (server.addRequest(request)) {
+                strategy.onRequestQueued(server);
+                return server;
+            }
+            if (server.getStatus() == Server.Status.ACTIVE) {
+                return null;                         // server queue full; counted as rejected
+            }
+            Thread.onSpinWait();                     // strategy may not have seen the removal yet
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package loadbalancer;
+
+/**
+ * Fast non-cryptographic hashes (MurmurHash3 x86_32) over ints, for placing
+ * packed client IPs and server virtual nodes on hash rings and lookup tables.
+ */
+public final class Hashing {
+
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private Hashing() {
+    }
+
+    /**
+     * MurmurHash3 of a single int (e.g. a packed IPv4 address).
+     */
+    public static int murmur3(int key, int seed) {
+        int h = mixBlock(seed, key);
+        return finish(h, 4);
+    }
+
+    /**
+     * MurmurHash3 of two ints (e.g. server id + virtual node index).
+     */
+    public static int murmur3(int a, int b, int seed) {
+        int h = mixBlock(seed, a);
+        h = mixBlock(h, b);
+        return finish(h, 8);
+    }
+
+    private static int mixBlock(int h, int k) {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        k *= C2;
+        h ^= k;
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xe6546b64;
+    }
+
+    private static int finish(int h, int length) {
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
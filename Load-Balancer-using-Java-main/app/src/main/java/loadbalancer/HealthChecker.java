@@ -0,0 +1,231 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Active and passive health checking with outlier ejection.
+ *
+ * Every -Dlb.health.intervalMs the "HealthCheck" thread probes each server that is up:
+ * - proxy mode: a TCP connect to the upstream within lb.health.timeoutMs;
+ * - simulated servers: the server thread must be alive (thread model), and a server
+ *   holding work must have completed something within lb.health.stallMs.
+ * Proxy threads also report failed upstream connections as they happen (passive).
+ *
+ * A server is ejected after lb.health.failures failures in a row, or when its peak-EWMA
+ * service time is more than lb.health.latencyFactor times the median of its peers.
+ * Ejection moves it to the registry's ejected set, so the next pick by any strategy
+ * already skips it, and its queued requests are handed back to the dispatcher. It is
+ * readmitted after lb.health.ejectMs * 2^(ejections - 1) (capped at lb.health.maxEjectMs)
+ * once a probe passes again. At most lb.health.maxEjectionPercent of the servers, and
+ * never the last active one, are ejected at a time. A dead server thread is ejected
+ * at once and never readmitted; a server that stopped on its own is dropped.
+ */
+final class HealthChecker {
+
+    // ====== Config ======
+    static final boolean ENABLED = Boolean.getBoolean("lb.health");
+    private static final long INTERVAL_MS = Long.getLong("lb.health.intervalMs", 500L);
+    private static final int TIMEOUT_MS = Integer.getInteger("lb.health.timeoutMs", 1000);
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("lb.health.stallMs", 5000L));
+    private static final int FAILURES = Integer.getInteger("lb.health.failures", 3);
+    private static final double LATENCY_FACTOR = Double.parseDouble(System.getProperty("lb.health.latencyFactor", "3.0"));
+    private static final long LATENCY_FLOOR_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int MIN_REQUESTS = Integer.getInteger("lb.health.minRequests", 20);
+    private static final int MIN_PEERS = 3;
+    private static final long EJECT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("lb.health.ejectMs", 1000L));
+    private static final long MAX_EJECT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("lb.health.maxEjectMs", 60_000L));
+    private static final int MAX_EJECTION_PERCENT = Integer.getInteger("lb.health.maxEjectionPercent", 50);
+
+    private HealthChecker() {
+    }
+
+    /**
+     * Starts the probe thread (with -Dlb.health=true).
+     */
+    static void start() {
+        if (!ENABLED) {
+            return;
+        }
+        Thread checker = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    check();
+                } catch (RuntimeException e) {
+                    Log.warn("Health check failed: " + e);
+                }
+            }
+        }, "HealthCheck");
+        checker.setDaemon(true);
+        checker.start();
+    }
+
+    /**
+     * Passive check: a request to this server failed. Any thread.
+     */
+    static void reportFailure(Server server, String reason) {
+        if (ENABLED && server.getHealth().recordFailure(reason) >= FAILURES) {
+            eject(server, reason);
+        }
+    }
+
+    /**
+     * Passive check: a request to this server succeeded. Any thread.
+     */
+    static void reportSuccess(Server server) {
+        server.getHealth().recordSuccess();
+    }
+
+    /**
+     * One round: probe everything that is up, readmit what served its time, then look for latency outliers.
+     */
+    private static void check() {
+        long now = System.nanoTime();
+        for (Server s : up()) {
+            if (s.getStatus() == Server.Status.STOPPED) {
+                forget(s);                            // its thread already ended and cleaned up
+                continue;
+            }
+            ServerHealth h = s.getHealth();
+            String failure = probe(s, h, now);
+            if (failure != null) {
+                if (h.recordFailure(failure) >= FAILURES || isDead(s)) {
+                    eject(s, failure);                // a dead server gets no second chance
+                }
+            } else {
+                h.recordSuccess();
+                if (h.isEjected() && now - h.ejectedUntilNanos >= 0) {
+                    readmit(s, now);
+                }
+            }
+        }
+        findLatencyOutliers();
+    }
+
+    private static List<Server> up() {
+        List<Server> up = new ArrayList<>(LoadBalancer.registry.active());
+        up.addAll(LoadBalancer.registry.ejected());
+        return up;
+    }
+
+    /**
+     * Thread model: the server thread ended without the server being retired.
+     */
+    private static boolean isDead(Server s) {
+        return s.getUpstream() == null && !Server.isConcurrentModel() && !s.isAlive();
+    }
+
+    /**
+     * Returns why the server failed its probe, or null if it passed.
+     */
+    private static String probe(Server s, ServerHealth h, long now) {
+        if (isDead(s)) {
+            return "server thread died";
+        }
+        if (s.getUpstream() != null) {
+            try (Socket socket = new Socket()) {
+                socket.connect(s.getUpstream(), TIMEOUT_MS);
+                return null;
+            } catch (IOException e) {
+                return "probe: " + e.getMessage();
+            }
+        }
+        long completed = s.getTotalProcessedRequests();
+        if (completed != h.lastCompleted || s.getPendingRequests() == 0) {
+            h.lastCompleted = completed;
+            h.lastProgressNanos = now;
+            return null;
+        }
+        return now - h.lastProgressNanos >= STALL_NANOS ? "stalled with " + s.getPendingRequests() + " pending" : null;
+    }
+
+    /**
+     * Ejects active servers whose service time is far above the median of their peers.
+     */
+    private static void findLatencyOutliers() {
+        List<Server> active = LoadBalancer.registry.active();
+        if (active.size() < MIN_PEERS) {
+            return;
+        }
+        double[] ewma = new double[active.size()];
+        for (int i = 0; i < ewma.length; i++) {
+            ewma[i] = active.get(i).getServiceTimeEwmaNanos();
+        }
+        double[] sorted = ewma.clone();
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+
+        for (int i = 0; i < ewma.length; i++) {
+            Server s = active.get(i);
+            boolean enoughSamples = s.getTotalProcessedRequests() - s.getHealth().completedAtReadmit >= MIN_REQUESTS;
+            if (enoughSamples && ewma[i] > median * LATENCY_FACTOR && ewma[i] - median > LATENCY_FLOOR_NANOS) {
+                String reason = String.format("latency outlier: %.0f ms vs median %.0f ms", ewma[i] / 1e6, median / 1e6);
+                s.getHealth().recordFailure(reason);
+                eject(s, reason);
+            }
+        }
+    }
+
+    /**
+     * Takes a server out of selection with exponential back-off. Any thread.
+     */
+    private static void eject(Server s, String reason) {
+        if (!LoadBalancer.registry.eject(s, MAX_EJECTION_PERCENT)) {
+            return;                                   // already out, or too many out already
+        }
+        ServerHealth h = s.getHealth();
+        long now = System.nanoTime();
+        synchronized (h) {
+            if (now - h.readmittedNanos > MAX_EJECT_NANOS) {
+                h.ejections = 0;                      // healthy for a long time: start the back-off over
+            }
+            h.ejections++;
+            long duration = Math.min(MAX_EJECT_NANOS, EJECT_NANOS << Math.min(h.ejections - 1, 30));
+            h.ejectedUntilNanos = now + duration;
+            h.setEjected(true);
+            Log.warn("Server " + s.getServerId() + " ejected for "
+                    + TimeUnit.NANOSECONDS.toMillis(duration) + " ms (" + reason + ").");
+        }
+        Metrics.recordEjection();
+        int handedBack = s.handBackQueue();
+        if (handedBack > 0) {
+            Log.info("Server " + s.getServerId() + " handed " + handedBack + " queued requests back.");
+        }
+        LoadBalancer.updateUILabels();
+    }
+
+    /**
+     * Drops a server that stopped on its own while it was still selectable.
+     */
+    private static void forget(Server s) {
+        if (LoadBalancer.registry.retire(s)) {
+            LoadBalancer.registry.stopped(s);
+            Log.warn("Server " + s.getServerId() + " removed: it stopped unexpectedly.");
+            LoadBalancer.updateUILabels();
+        }
+    }
+
+    private static void readmit(Server s, long now) {
+        if (!LoadBalancer.registry.readmit(s)) {
+            return;
+        }
+        ServerHealth h = s.getHealth();
+        synchronized (h) {
+            h.readmittedNanos = now;
+            h.completedAtReadmit = s.getTotalProcessedRequests();
+            h.lastProgressNanos = now;
+            h.setEjected(false);
+        }
+        Log.info("Server " + s.getServerId() + " readmitted.");
+        LoadBalancer.updateUILabels();
+    }
+}
@@ -0,0 +1,84 @@
+package loadbalancer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Requests are mapped to servers based on the client IP hash.
+ *
+ * Uses a consistent-hash ring: every server owns a number of virtual nodes placed
+ * by hashing (server id, node index), and a client goes to the first node clockwise
+ * from murmur3(packed IP). Adding or removing one of N servers only moves about 1/N
+ * of the clients. The ring is rebuilt off the hot path whenever servers change and
+ * published as one immutable snapshot; lookup is a binary search.
+ */
+public class IPHashStrategy implements BalancingStrategy {
+
+    private static final int VIRTUAL_NODES = Integer.getInteger("lb.hash.vnodes", 160);
+    private static final int IP_SEED = 0x9747b28c;
+
+    /**
+     * Immutable ring snapshot: sorted node hashes and their owners.
+     */
+    private static final class Ring {
+        final int[] points;
+        final Server[] owners;
+
+        Ring(int[] points, Server[] owners) {
+            this.points = points;
+            this.owners = owners;
+        }
+    }
+
+    private volatile Ring ring = new Ring(new int[0], new Server[0]);
+
+    @Override
+    public String getName() {
+        return "IPHashing";
+    }
+
+    @Override
+    public boolean isSticky() {
+        return true;
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        Ring r = ring;
+        if (r.points.length == 0) {
+            return servers.get(0);
+        }
+        int hash = Hashing.murmur3(request.getPackedIP(), IP_SEED);
+        int slot = Arrays.binarySearch(r.points, hash);
+        if (slot < 0) {
+            slot = -slot - 1;           // first node clockwise
+        }
+        if (slot == r.points.length) {
+            slot = 0;                   // wrap around
+        }
+        return r.owners[slot];
+    }
+
+    @Override
+    public void onServersChanged(List<Server> servers) {
+        int nodes = Math.max(1, VIRTUAL_NODES);
+        // Sort (hash, server index) pairs together by packing them into longs
+        long[] entries = new long[servers.size() * nodes];
+        int n = 0;
+        for (int i = 0; i < servers.size(); i++) {
+            int id = servers.get(i).getServerId();
+            for (int v = 0; v < nodes; v++) {
+                entries[n++] = ((long) Hashing.murmur3(id, v, 0) << 32) | i;
+            }
+        }
+        Arrays.sort(entries);
+
+        int[] points = new int[entries.length];
+        Server[] owners = new Server[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = (int) (entries[i] >> 32);
+            owners[i] = servers.get((int) entries[i]);
+        }
+        ring = new Ring(points, owners);
+    }
+}
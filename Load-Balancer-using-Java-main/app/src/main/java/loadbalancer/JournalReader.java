@@ -0,0 +1,106 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Sequential reader over a RequestJournal directory.
+ *
+ * Segments are mapped read-only one at a time, in file-name order. Slots that were never
+ * written (timestamp 0: the unused tail of the last segment, or a record a crash cut
+ * short) are skipped. Arrival times are nanoseconds since the journal started; they are
+ * close to, but not strictly, increasing, since ingress threads race for slots.
+ */
+public final class JournalReader implements AutoCloseable {
+
+    private final List<Path> files;
+    private int fileIndex = -1;
+    private MappedByteBuffer segment;
+    private long recordsInSegment;
+    private long position;
+
+    private int packedIP;
+    private int requestSize;
+    private long arrivalNanos;
+
+    /**
+     * Opens the journal in dir. Fails if it holds no segments.
+     */
+    public JournalReader(Path dir) throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(RequestJournal.SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            throw new IOException("no journal segments in " + dir);
+        }
+    }
+
+    /**
+     * Moves to the next recorded request. Returns false at the end of the journal.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            while (segment != null && position < recordsInSegment) {
+                int offset = RequestJournal.HEADER_LENGTH + (int) (position++ * RequestJournal.RECORD_LENGTH);
+                long stamp = segment.getLong(offset + 8);
+                if (stamp != 0) {
+                    packedIP = segment.getInt(offset);
+                    requestSize = segment.getInt(offset + 4);
+                    arrivalNanos = stamp - 1;
+                    return true;
+                }
+            }
+            if (++fileIndex >= files.size()) {
+                segment = null;
+                return false;
+            }
+            openSegment(files.get(fileIndex));
+        }
+    }
+
+    public int getPackedIP() {
+        return packedIP;
+    }
+
+    public int getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * Arrival time of the current request, in nanoseconds since the journal started.
+     */
+    public long getArrivalNanos() {
+        return arrivalNanos;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        fileIndex = files.size();
+    }
+
+    private void openSegment(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < RequestJournal.HEADER_LENGTH
+                    || buffer.getInt(0) != RequestJournal.MAGIC
+                    || buffer.getInt(4) != RequestJournal.VERSION
+                    || buffer.getInt(8) != RequestJournal.RECORD_LENGTH) {
+                throw new IOException("not a request journal segment: " + file);
+            }
+            segment = buffer;
+            recordsInSegment = Math.min(buffer.getLong(24),
+                    (buffer.capacity() - RequestJournal.HEADER_LENGTH) / RequestJournal.RECORD_LENGTH);
+            position = 0;
+        }
+    }
+}
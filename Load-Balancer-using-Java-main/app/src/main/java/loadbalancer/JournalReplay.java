@@ -0,0 +1,165 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams a RequestJournal back to the balancer.
+ *
+ * Each of -Dlb.replay.connections persistent connections sends every Nth record as
+ * binary frames. A record is due at replay start + (arrival - first arrival) / speed, so
+ * 1x reproduces the recorded inter-arrival gaps, Nx compresses them N-fold, and speed 0
+ * sends as fast as the connections allow. As in LoadGenerator, all due requests go out
+ * in one write and the schedule never slips when the balancer pushes back; falling
+ * behind shows up as send lag.
+ */
+public class JournalReplay {
+
+    // ====== Config ======
+    private static final int SEND_BUFFER_SIZE = 64 * 1024;
+
+    private final Path dir;
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final double speed;            // 1 = recorded pace, 0 = as fast as possible
+    private final int maxBatch;
+    private final SendStats stats = new SendStats("JournalReplay");
+
+    public JournalReplay(Path dir, String host, int port, int connections, double speed, int maxBatch) {
+        this.dir = dir;
+        this.host = host;
+        this.port = port;
+        this.connections = Math.max(1, connections);
+        this.speed = Math.max(0, speed);
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    /**
+     * Builds a replay from -Dlb.replay.* system properties; lb.replay names the journal directory.
+     */
+    public static JournalReplay fromSystemProperties() {
+        return new JournalReplay(
+                Path.of(System.getProperty("lb.replay")),
+                System.getProperty("lb.replay.host", "localhost"),
+                Integer.getInteger("lb.replay.port", 8081),
+                Integer.getInteger("lb.replay.connections", 8),
+                Double.parseDouble(System.getProperty("lb.replay.speed", "1")),
+                Integer.getInteger("lb.replay.batch", 256));
+    }
+
+    /**
+     * Replays the whole journal, reporting every second, and returns when every record was sent.
+     */
+    public void run() throws IOException, InterruptedException {
+        long firstArrival;
+        try (JournalReader reader = new JournalReader(dir)) {
+            if (!reader.next()) {
+                System.out.println("JournalReplay: " + dir + " is empty");
+                return;
+            }
+            firstArrival = reader.getArrivalNanos();
+        }
+        System.out.printf("JournalReplay: %s at %s over %d connections%n",
+                dir, speed == 0 ? "max speed" : speed + "x", connections);
+
+        long start = System.nanoTime();
+        Thread[] senders = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            int lane = i;
+            senders[i] = new Thread(() -> sendLoop(lane, start, firstArrival), "Replay-" + i);
+            senders[i].setDaemon(true);
+            senders[i].start();
+        }
+
+        stats.reportWhile(() -> isAlive(senders));
+        stats.printSummary(start);
+    }
+
+    /**
+     * Sends records lane, lane + connections, ... on one connection, each when it is due.
+     * Reconnects (keeping the schedule and the pending record) if the connection drops.
+     */
+    private void sendLoop(int lane, long start, long firstArrival) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+        RequestCodec codec = BinaryRequestCodec.INSTANCE;
+        UserRequest request = new UserRequest(0, 1);        // reused for every record
+
+        try (JournalReader reader = new JournalReader(dir)) {
+            boolean pending = advance(reader, lane);
+            while (pending) {
+                try (SocketChannel channel = LoadGenerator.connect(host, port, codec.format())) {
+                    Thread replies = new Thread(() -> LoadGenerator.readReplies(channel, stats.busy()),
+                            Thread.currentThread().getName() + "-replies");
+                    replies.setDaemon(true);
+                    replies.start();
+
+                    while (pending) {
+                        long now = System.nanoTime();
+                        buffer.clear();
+
+                        int batch = 0;
+                        long due = dueAt(reader, start, firstArrival);
+                        while (pending && due <= now && batch < maxBatch) {
+                            request.reset(reader.getPackedIP(), reader.getRequestSize());
+                            if (!codec.encode(request, buffer)) {
+                                break;
+                            }
+                            stats.recordLag(now - due);
+                            batch++;
+                            pending = advance(reader, connections - 1);
+                            due = pending ? dueAt(reader, start, firstArrival) : Long.MAX_VALUE;
+                        }
+
+                        if (batch > 0) {
+                            buffer.flip();
+                            while (buffer.hasRemaining()) {
+                                channel.write(buffer);
+                            }
+                            stats.recordFlush(batch);
+                        } else {
+                            LockSupport.parkNanos(due - now);
+                        }
+                    }
+                } catch (IOException e) {
+                    stats.recordFailedConnection();
+                    System.out.println(Thread.currentThread().getName() + " connection error: " + e.getMessage());
+                    LockSupport.parkNanos(500_000_000L);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(Thread.currentThread().getName() + " cannot read journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Skips the given number of records, then moves to the next one. False at the end.
+     */
+    private static boolean advance(JournalReader reader, int skip) throws IOException {
+        for (int i = 0; i < skip; i++) {
+            if (!reader.next()) {
+                return false;
+            }
+        }
+        return reader.next();
+    }
+
+    private long dueAt(JournalReader reader, long start, long firstArrival) {
+        if (speed == 0) {
+            return start;
+        }
+        return start + (long) (Math.max(0, reader.getArrivalNanos() - firstArrival) / speed);
+    }
+
+    private static boolean isAlive(Thread[] threads) {
+        for (Thread t : threads) {
+            if (t.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package loadbalancer;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lock-free latency histogram with interval and cumulative views.
+ *
+ * Any thread may record (wait-free, no allocation once a value range has been seen).
+ * The metrics sampler calls roll() once per interval, which swaps out the interval
+ * histogram, folds it into the cumulative one and publishes both summaries as
+ * immutable LatencyStats. Histograms auto-resize, so memory follows the observed value
+ * range rather than the full trackable range.
+ *
+ * The recorder is not packed: a packed concurrent histogram grows its storage from
+ * inside the recording writer's critical section, and writers that grow it at the same
+ * time livelock (HdrHistogram 2.1.12 and 2.2.2), hanging every server that completes a
+ * request. The cumulative histogram is only touched by roll() and stays packed.
+ */
+public class LatencyRecorder {
+
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int DEFAULT_SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder;
+    private final Histogram cumulative;
+    private Histogram interval;
+
+    private volatile LatencyStats intervalStats = LatencyStats.EMPTY;
+    private volatile LatencyStats cumulativeStats = LatencyStats.EMPTY;
+
+    /**
+     * Creates a recorder with 3 significant digits of precision.
+     */
+    public LatencyRecorder() {
+        this(DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Creates a recorder with the given precision (2 digits = 1% value error).
+     */
+    public LatencyRecorder(int significantDigits) {
+        this.recorder = new Recorder(significantDigits);
+        this.cumulative = new PackedHistogram(significantDigits);
+    }
+
+    /**
+     * Records one latency value in nanoseconds.
+     */
+    public void record(long nanos) {
+        recorder.recordValue(Math.min(Math.max(nanos, 0), MAX_TRACKABLE_NANOS));
+    }
+
+    /**
+     * Closes the current interval and publishes fresh summaries. Sampler thread only.
+     */
+    synchronized void roll() {
+        interval = recorder.getIntervalHistogram(interval);
+        cumulative.add(interval);
+        intervalStats = LatencyStats.of(interval);
+        cumulativeStats = LatencyStats.of(cumulative);
+    }
+
+    /**
+     * Returns the summary of the last completed interval.
+     */
+    public LatencyStats getInterval() {
+        return intervalStats;
+    }
+
+    /**
+     * Returns the summary since start-up.
+     */
+    public LatencyStats getCumulative() {
+        return cumulativeStats;
+    }
+}
@@ -0,0 +1,69 @@
+package loadbalancer;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Immutable latency summary (all values in nanoseconds).
+ */
+public final class LatencyStats {
+
+    public static final LatencyStats EMPTY = new LatencyStats(0, 0, 0, 0, 0, 0);
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public LatencyStats(long count, double mean, long p50, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * Summarises a histogram.
+     */
+    public static LatencyStats of(Histogram h) {
+        if (h.getTotalCount() == 0) {
+            return EMPTY;
+        }
+        return new LatencyStats(h.getTotalCount(), h.getMean(),
+                h.getValueAtPercentile(50), h.getValueAtPercentile(99),
+                h.getValueAtPercentile(99.9), h.getMaxValue());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms",
+                count, p50 / 1e6, p99 / 1e6, p999 / 1e6, max / 1e6);
+    }
+}
@@ -0,0 +1,221 @@
+package loadbalancer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Requests are assigned to the server with the fewest active connections.
+ *
+ * Servers are spread by id over STRIPES indexed binary min-heaps keyed by pending
+ * requests. Every enqueue, completion, drop or steal re-reads that server's counter and
+ * moves it within its own stripe in O(log n), under that stripe's lock only, so
+ * concurrent callbacks for different stripes do not contend. Each stripe publishes its
+ * root through a volatile field; select() takes no lock and allocates nothing. It compares
+ * the STRIPES roots by their live pending counts, so concurrent dispatchers see each
+ * other's picks. If no root is ACTIVE (a server left before onServersChanged), the
+ * request falls back to a scan of the servers it was given.
+ */
+public class LeastConnectionsStrategy implements BalancingStrategy {
+
+    // A power of two, one stripe per core up to 64 so that callbacks rarely share a lock
+    private static final int STRIPES = Math.max(4, Math.min(64,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    private static final int SHIFT = Integer.numberOfTrailingZeros(STRIPES);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public LeastConnectionsStrategy() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "LeastConnections";
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        Server best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (Stripe stripe : stripes) {
+            Server top = stripe.top;
+            if (top == null) {
+                continue;
+            }
+            int p = top.getPendingRequests();
+            if (p < bestPending && top.getStatus() == Server.Status.ACTIVE) {
+                best = top;
+                bestPending = p;
+            }
+        }
+        if (best == null) {
+            best = leastPending(servers);
+        }
+        return best != null ? best : servers.get(0);
+    }
+
+    @Override
+    public void onServersChanged(List<Server> servers) {
+        for (Stripe stripe : stripes) {
+            stripe.rebuild(servers);
+        }
+    }
+
+    @Override
+    public void onRequestQueued(Server server) {
+        update(server);
+    }
+
+    @Override
+    public void onRequestDropped(Server server) {
+        update(server);
+    }
+
+    @Override
+    public void onRequestStolen(Server from, Server to) {
+        update(from);
+        update(to);
+    }
+
+    @Override
+    public void onRequestCompleted(Server server, long serviceTimeNanos) {
+        update(server);
+    }
+
+    private void update(Server server) {
+        stripes[server.getServerId() & (STRIPES - 1)].update(server);
+    }
+
+    /**
+     * Returns the ACTIVE server with the fewest pending requests, or null if there is none.
+     */
+    private static Server leastPending(List<Server> servers) {
+        Server best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (int i = 0; i < servers.size(); i++) {
+            Server server = servers.get(i);
+            int p = server.getPendingRequests();
+            if (p < bestPending && server.getStatus() == Server.Status.ACTIVE) {
+                best = server;
+                bestPending = p;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The heap for the servers whose id falls into one stripe, indexed by id >>> SHIFT.
+     */
+    private static final class Stripe {
+
+        private Server[] heap = new Server[16];
+        private int[] keys = new int[16];          // pending count each slot was last ordered by
+        private int[] slotByIndex = new int[16];   // id >>> SHIFT -> heap slot + 1 (0 = not in heap)
+        private int size = 0;
+        private final int number;
+        volatile Server top;                       // heap[0], republished after every change
+
+        Stripe(int number) {
+            this.number = number;
+        }
+
+        synchronized void rebuild(List<Server> servers) {
+            Arrays.fill(heap, 0, size, null);
+            Arrays.fill(slotByIndex, 0);
+            size = 0;
+            for (int i = 0; i < servers.size(); i++) {
+                Server s = servers.get(i);
+                if ((s.getServerId() & (STRIPES - 1)) == number) {
+                    insert(s);
+                }
+            }
+            top = heap[0];
+        }
+
+        /**
+         * Re-reads the server's pending count and restores heap order around it.
+         */
+        synchronized void update(Server server) {
+            int slot = slotOf(server);
+            if (slot < 0) {
+                return;
+            }
+            int oldKey = keys[slot];
+            int newKey = server.getPendingRequests();
+            keys[slot] = newKey;
+            if (newKey < oldKey) {
+                siftUp(slot);
+            } else if (newKey > oldKey) {
+                siftDown(slot);
+            } else {
+                return;
+            }
+            top = heap[0];
+        }
+
+        private void insert(Server server) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = server.getServerId() >>> SHIFT;
+            if (i >= slotByIndex.length) {
+                slotByIndex = Arrays.copyOf(slotByIndex, Math.max(i + 1, slotByIndex.length * 2));
+            }
+            heap[size] = server;
+            keys[size] = server.getPendingRequests();
+            slotByIndex[i] = size + 1;
+            siftUp(size++);
+        }
+
+        private int slotOf(Server server) {
+            int i = server.getServerId() >>> SHIFT;
+            if (i >= slotByIndex.length || slotByIndex[i] == 0) {
+                return -1;
+            }
+            int slot = slotByIndex[i] - 1;
+            return heap[slot] == server ? slot : -1;
+        }
+
+        private void siftUp(int slot) {
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (keys[parent] <= keys[slot]) {
+                    break;
+                }
+                swap(slot, parent);
+                slot = parent;
+            }
+        }
+
+        private void siftDown(int slot) {
+            while (true) {
+                int left = 2 * slot + 1;
+                if (left >= size) {
+                    break;
+                }
+                int right = left + 1;
+                int child = (right < size && keys[right] < keys[left]) ? right : left;
+                if (keys[slot] <= keys[child]) {
+                    break;
+                }
+                swap(slot, child);
+                slot = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            Server sa = heap[a];
+            Server sb = heap[b];
+            int ka = keys[a];
+            heap[a] = sb;
+            keys[a] = keys[b];
+            heap[b] = sa;
+            keys[b] = ka;
+            slotByIndex[sb.getServerId() >>> SHIFT] = a + 1;
+            slotByIndex[sa.getServerId() >>> SHIFT] = b + 1;
+        }
+    }
+}
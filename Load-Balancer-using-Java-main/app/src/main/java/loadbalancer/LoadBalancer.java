@@ -0,0 +1,516 @@
+package loadbalancer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ItemEvent;
+import java.io.ObjectInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoadBalancer {
+
+    public static final ServerRegistry registry = new ServerRegistry();
+    public static final LongAdder totalRequests = new LongAdder();
+
+    // UI Components (global so we can update them from anywhere)
+    private static JLabel lblAlgorithm;
+    private static JLabel lblTotalServers;
+    private static JLabel lblTotalRequests;
+    private static JLabel lblLatency;
+    private static JLabel lblOverload;
+    private static NetworkHealthWindow networkHealthWindow;
+
+    // UI refresh: -Dlb.ui.refreshMs=N; at most one refresh is ever waiting on the EDT
+    private static final long UI_REFRESH_MS = Long.getLong("lb.ui.refreshMs", 100L);
+    private static final AtomicBoolean uiRefreshPending = new AtomicBoolean();
+
+    private static final AutoScaler autoScaler = new AutoScaler(LoadBalancer::updateUILabels);
+
+    // Headless mode (-Dlb.headless=true, or no display): no Swing windows, control through the admin endpoint
+    private static final boolean HEADLESS = Boolean.getBoolean("lb.headless") || GraphicsEnvironment.isHeadless();
+
+    // Admin endpoint: -Dlb.admin.port=N (0 or less disables it), -Dlb.admin.bind=addr,
+    // -Dlb.admin.control=true to allow the calls that change anything
+    private static final int ADMIN_PORT = Integer.getInteger("lb.admin.port", 8082);
+    private static final String ADMIN_BIND = System.getProperty("lb.admin.bind", "127.0.0.1");
+    private static final boolean ADMIN_CONTROL = Boolean.getBoolean("lb.admin.control");
+
+    // Ingress config: -Dlb.ingress=nio|blocking, -Dlb.ingress.threads=N
+    private static final int PORT = 8081;
+    private static final String INGRESS_MODE = System.getProperty("lb.ingress", "nio");
+    private static final int INGRESS_THREADS = Integer.getInteger("lb.ingress.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    // Proxy mode: -Dlb.mode=proxy -Dlb.proxy.upstreams=host:port,host:port (servers are real upstreams)
+    private static final boolean PROXY_MODE = "proxy".equals(System.getProperty("lb.mode", "simulate"));
+    private static final List<InetSocketAddress> UPSTREAMS =
+            ReverseProxy.parseUpstreams(System.getProperty("lb.proxy.upstreams", ""));
+
+    // Server weights for WeightedRoundRobin: -Dlb.server.weights=5,1,1 (server N gets entry (N-1) % size)
+    private static final int[] SERVER_WEIGHTS = parseWeights(System.getProperty("lb.server.weights", "1"));
+
+    // Per-client rate limiting: -Dlb.ratelimit.rate=N req/s per IP (null when off)
+    private static RateLimiter rateLimiter;
+
+    // Request journal: -Dlb.journal=true records every accepted request (null when off)
+    private static RequestJournal journal;
+
+    // Dispatcher config: -Dlb.dispatchers=N
+    private static final int DISPATCHER_THREADS = Integer.getInteger("lb.dispatchers",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    public static final Dispatcher dispatcher = new Dispatcher(DISPATCHER_THREADS);
+
+
+    public static void main(String[] args) throws Exception {
+
+        rateLimiter = RateLimiter.configured();
+        journal = RequestJournal.configured();
+        if (journal != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "Journal-Close"));
+        }
+
+        if (PROXY_MODE) {
+            if (UPSTREAMS.isEmpty()) {
+                throw new IllegalStateException("Proxy mode needs -Dlb.proxy.upstreams=host:port[,host:port...]");
+            }
+            for (InetSocketAddress upstream : UPSTREAMS) {
+                addUpstream(upstream);
+            }
+        } else {
+            // Start server 1 by default
+            addServer();
+        }
+
+        if (!HEADLESS) {
+            networkHealthWindow = new NetworkHealthWindow();
+        }
+        // Start dispatcher workers, the metrics sampler and (if enabled) the work-stealing ticker
+        dispatcher.start();
+        Metrics.start();
+        WorkStealing.start();
+        HealthChecker.start();
+
+        autoScaler.start();
+
+        if (HEADLESS) {
+            System.out.println("Running headless; no control panel.");
+        } else {
+            // Start the Swing UI in another thread, refreshed from snapshots at a fixed rate
+            SwingUtilities.invokeLater(LoadBalancer::createAndShowUI);
+            startUIRefresh();
+        }
+
+        if (ADMIN_PORT > 0) {
+            new AdminServer(ADMIN_BIND, ADMIN_PORT, ADMIN_CONTROL).start();
+            System.out.println("Admin endpoint on http://" + ADMIN_BIND + ":" + ADMIN_PORT + "/ (metrics, servers, status"
+                    + (ADMIN_CONTROL ? ", control)" : "; read-only)"));
+        }
+
+        if (Server.isConcurrentModel()) {
+            System.out.println("Servers run concurrently on " + ServiceExecutor.describe() + ".");
+        }
+
+        if (PROXY_MODE) {
+            new ReverseProxy(PORT, INGRESS_THREADS).start();
+            System.out.println("Load Balancer proxying port " + PORT + " to " + UPSTREAMS.size() + " upstreams ("
+                    + INGRESS_THREADS + " selector threads)...");
+        } else if ("blocking".equals(INGRESS_MODE)) {
+            runBlockingIngress();
+        } else {
+            new NioIngress(PORT, INGRESS_THREADS).start();
+            System.out.println("Load Balancer running on port " + PORT + " (NIO, "
+                    + INGRESS_THREADS + " selector threads)...");
+        }
+    }
+
+    /**
+     * Original accept loop: one connection, one serialized request, then close.
+     */
+    private static void runBlockingIngress() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(PORT);
+        System.out.println("Load Balancer running on port " + PORT + "...");
+
+        while (true) {
+            try (Socket clientSocket = serverSocket.accept();
+                 ObjectInputStream in = WireProtocol.filteredInput(clientSocket.getInputStream())) {
+
+                if (!submitRequest((UserRequest) in.readObject())) {
+                    clientSocket.getOutputStream().write(WireProtocol.RESPONSE_BUSY);
+                }
+
+            } catch (Exception e) {
+                Log.warn("Error receiving object: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Validates a decoded request and queues it on the next dispatcher shard.
+     */
+    public static boolean submitRequest(UserRequest request) {
+        return submitRequest(request, dispatcher.assignShard());
+    }
+
+    /**
+     * Validates a decoded request and queues it on the given dispatcher shard.
+     * Called from every ingress thread. Returns false if the client is over its rate
+     * limit or the shard was full and rejected the request, so the ingress can tell the
+     * client the balancer is busy. Invalid requests are ignored and do not count as
+     * rejected. Accepted requests are appended to the request journal when one is recording.
+     */
+    public static boolean submitRequest(UserRequest request, int shard) {
+        if (request == null) {
+            return true;
+        }
+        if (request.getRequestSize() <= 0) {
+            RequestPool.release(request);
+            return true;
+        }
+        Metrics.recordIngress(request);
+        if (!allowClient(request)) {
+            RequestPool.release(request);
+            return false;
+        }
+        // Read before the hand-off: once queued, the request may be served and recycled
+        int packedIP = request.getPackedIP();
+        int requestSize = request.getRequestSize();
+        long arrivalNanos = request.getIngressNanos();
+        if (dispatcher.submit(request, shard)) {
+            if (journal != null) {
+                journal.record(packedIP, requestSize, arrivalNanos);
+            }
+            return true;
+        }
+        RequestPool.release(request);
+        return false;
+    }
+
+    /**
+     * Charges a request to its client's token bucket. Returns false, and counts the
+     * request as rate limited, if the client is over its rate.
+     */
+    static boolean allowClient(UserRequest request) {
+        if (rateLimiter == null || rateLimiter.tryAcquire(request.getPackedIP(), request.getIngressNanos())) {
+            return true;
+        }
+        Metrics.recordRateLimited();
+        return false;
+    }
+
+    /**
+     * Client IPs tracked by the rate limiter (0 when it is off).
+     */
+    static long getRateLimitedClients() {
+        return rateLimiter == null ? 0 : rateLimiter.getClients();
+    }
+
+    /**
+     * Clients the rate limiter pushed out of a full table set to make room for a new one.
+     */
+    static long getRateLimitEvictions() {
+        return rateLimiter == null ? 0 : rateLimiter.getEvictions();
+    }
+
+    /**
+     * Records dispatched requests. Called by dispatcher workers; the UI picks the
+     * count up on its next refresh, so nothing here touches Swing.
+     */
+    static void onDispatched(int count) {
+        totalRequests.add(count);
+    }
+
+
+
+    // ================= UI CODE =================
+    private static void createAndShowUI() {
+        JFrame frame = new JFrame("Load Balancer Control Panel");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(500, 450);
+        frame.setLayout(new GridLayout(0, 1));
+        frame.getContentPane().setBackground(Color.BLACK);
+
+        Font font = new Font("Consolas", Font.BOLD, 16);
+        Color green = new Color(0, 255, 70);
+
+        JButton btnAddServer = new JButton("Add Server");
+        JButton btnRemoveServer = new JButton("Remove Server");
+
+        JButton btnChangeAlgorithm = new JButton("Change Algorithm");
+        JToggleButton toggleAutoScale=new JToggleButton("Auto-Scaling OFF");
+
+        lblAlgorithm = new JLabel("Current Algorithm: " + BalancingStrategies.current().getName());
+        lblTotalServers = new JLabel("Total Servers: " + registry.size());
+        lblTotalRequests = new JLabel("Total Requests Made: " + totalRequests.sum());
+        lblLatency = new JLabel(latencyText(MetricsSnapshot.EMPTY));
+        lblOverload = new JLabel(overloadText(MetricsSnapshot.EMPTY));
+
+        for (JButton btn : new JButton[]{btnAddServer, btnRemoveServer, btnChangeAlgorithm}) {
+            styleButton(btn, font, green);
+        }
+
+        for (JLabel lbl : new JLabel[]{lblAlgorithm, lblTotalServers, lblTotalRequests, lblLatency, lblOverload}) {
+            lbl.setForeground(green);
+            lbl.setBackground(Color.BLACK);
+            lbl.setFont(font);
+        }
+
+        btnAddServer.addActionListener(e -> {
+            addServer();
+            updateUILabels();
+        });
+
+        btnRemoveServer.addActionListener(e -> {
+            if (registry.size()>1) {
+                removeServer();
+                updateUILabels();
+            }
+            else{
+                UIManager.put("OptionPane.background", Color.BLACK);
+                UIManager.put("Panel.background", Color.BLACK);
+                UIManager.put("OptionPane.messageForeground", new Color(0, 255, 70));
+                UIManager.put("Button.background", Color.BLACK);
+                UIManager.put("Button.foreground", new Color(0, 255, 70));
+                UIManager.put("OptionPane.font", new Font("Consolas", Font.BOLD, 16));
+
+                JOptionPane.showMessageDialog(
+                        frame,
+                        "There must be atleast 1 Running server",
+                        "Info",
+                        JOptionPane.INFORMATION_MESSAGE
+                );
+            }
+        });
+        // Style toggle just like other buttons
+        styleButton(toggleAutoScale, font, green);
+        // Disable default toggle grey pressed effect
+        toggleAutoScale.setContentAreaFilled(false);
+        toggleAutoScale.setOpaque(true);
+        toggleAutoScale.setForeground(Color.RED);
+        toggleAutoScale.addItemListener(e -> {
+            boolean enabled = e.getStateChange() == ItemEvent.SELECTED;
+            setAutoScalingEnabled(enabled);
+
+            if (enabled) {
+                toggleAutoScale.setText("Auto-Scaling: ON");
+                toggleAutoScale.setForeground(new Color(0, 255, 70)); // Matrix green
+            } else {
+                toggleAutoScale.setText("Auto-Scaling: OFF");
+                toggleAutoScale.setForeground(Color.RED); // Red when off
+            }
+        });
+
+
+
+        btnChangeAlgorithm.addActionListener(e -> {
+            // Apply Matrix theme to dialog
+            UIManager.put("OptionPane.background", Color.BLACK);
+            UIManager.put("Panel.background", Color.BLACK);
+            UIManager.put("OptionPane.messageForeground", new Color(0, 255, 70));
+            UIManager.put("Button.background", Color.BLACK);
+            UIManager.put("Button.foreground", new Color(0, 255, 70));
+            UIManager.put("OptionPane.font", new Font("Consolas", Font.BOLD, 16));
+            UIManager.put("ComboBox.background", Color.BLACK);
+            UIManager.put("ComboBox.foreground", new Color(0, 255, 70));
+
+            String[] algos = BalancingStrategies.names();
+            String choice = (String) JOptionPane.showInputDialog(
+                    frame,
+                    "Select Algorithm:",
+                    "Change Algorithm",
+                    JOptionPane.PLAIN_MESSAGE,
+                    null,
+                    algos,
+                    BalancingStrategies.current().getName()
+            );
+            if (choice != null) {
+                setAlgorithm(choice);
+            }
+        });
+
+
+        frame.add(btnAddServer);
+        frame.add(btnRemoveServer);
+        frame.add(btnChangeAlgorithm);
+        frame.add(toggleAutoScale);
+        frame.add(lblAlgorithm);
+        frame.add(lblTotalServers);
+        frame.add(lblTotalRequests);
+        frame.add(lblLatency);
+        frame.add(lblOverload);
+
+        frame.setVisible(true);
+    }
+
+    /**
+     * Starts a new server (with a fresh id) and makes it visible to the dispatcher and the active strategy.
+     * In proxy mode this re-adds a configured upstream that is not in use, or returns null if there is none.
+     */
+    public static Server addServer() {
+        if (PROXY_MODE) {
+            InetSocketAddress spare = spareUpstream();
+            return spare == null ? null : addUpstream(spare);
+        }
+        int id = registry.nextId();
+        Server newServer = new Server(id, weightFor(id));
+        newServer.startServing();
+        registry.add(newServer);
+        return newServer;
+    }
+
+    /**
+     * Proxy mode: adds a server that forwards to the given upstream host:port.
+     */
+    public static Server addUpstream(InetSocketAddress upstream) {
+        int id = registry.nextId();
+        Server newServer = new Server(id, weightFor(id), upstream);
+        registry.add(newServer);
+        return newServer;
+    }
+
+    /**
+     * Returns true if servers are real upstreams (-Dlb.mode=proxy).
+     */
+    public static boolean isProxyMode() {
+        return PROXY_MODE;
+    }
+
+    private static InetSocketAddress spareUpstream() {
+        for (InetSocketAddress upstream : UPSTREAMS) {
+            boolean inUse = false;
+            for (Server s : registry.all()) {
+                inUse |= upstream.equals(s.getUpstream());
+            }
+            if (!inUse) {
+                return upstream;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retires the most recently added server. It stops getting new requests at once and
+     * drains in the background; nothing it had queued is lost.
+     * Returns null if there was no server to remove: the last active server is kept.
+     */
+    public static Server removeServer() {
+        while (true) {
+            List<Server> active = registry.active();
+            if (active.size() <= 1) {
+                return null;
+            }
+            Server s = active.get(active.size() - 1);
+            if (registry.retireUnlessLast(s)) {
+                s.shutdown();
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Retires the active (or ejected) server with the given id, like removeServer().
+     * Returns null if no such server is up, or if it is the last active server.
+     */
+    public static Server removeServer(int serverId) {
+        for (Server s : registry.all()) {
+            if (s.getServerId() == serverId && s.getStatus() == Server.Status.ACTIVE) {
+                if (!registry.retireUnlessLast(s)) {
+                    return null;
+                }
+                s.shutdown();
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Switches the balancing algorithm. Throws IllegalArgumentException for an unknown name.
+     */
+    public static void setAlgorithm(String name) {
+        registry.activateStrategy(name);
+        updateUILabels();
+    }
+
+    static int weightFor(int serverId) {
+        return SERVER_WEIGHTS[(serverId - 1) % SERVER_WEIGHTS.length];
+    }
+
+    private static int[] parseWeights(String spec) {
+        String[] parts = spec.split(",");
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            weights[i] = Math.max(1, Integer.parseInt(parts[i].trim()));
+        }
+        return weights;
+    }
+
+    private static void styleButton(AbstractButton  btn, Font font, Color green) {
+        btn.setFont(font);
+        btn.setBackground(Color.BLACK);
+        btn.setForeground(green);
+        btn.setFocusPainted(false);
+        btn.setBorder(BorderFactory.createLineBorder(green));
+    }
+
+    /**
+     * Samples a fresh snapshot every UI_REFRESH_MS and hands it to the EDT, skipping a
+     * tick while the previous one is still queued so the EDT can never fall behind.
+     */
+    private static void startUIRefresh() {
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "UI-Refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(LoadBalancer::updateUILabels, UI_REFRESH_MS, UI_REFRESH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refreshes the control panel labels and the health table from one snapshot.
+     */
+    static void updateUILabels() {
+        if (lblAlgorithm == null || !uiRefreshPending.compareAndSet(false, true)) {
+            return;                                  // UI not built (yet), or a refresh is already queued
+        }
+        MetricsSnapshot snapshot = MetricsSnapshot.capture();
+        SwingUtilities.invokeLater(() -> {
+            uiRefreshPending.set(false);
+            lblAlgorithm.setText("Current Algorithm: " + snapshot.algorithm);
+            lblTotalServers.setText("Total Servers: " + snapshot.activeServers());
+            lblTotalRequests.setText("Total Requests Made: " + snapshot.dispatched);
+            lblLatency.setText(latencyText(snapshot));
+            lblOverload.setText(overloadText(snapshot));
+            if (networkHealthWindow != null) {
+                networkHealthWindow.showSnapshot(snapshot);
+            }
+        });
+    }
+
+    private static String latencyText(MetricsSnapshot snapshot) {
+        LatencyStats e2e = snapshot.endToEnd;
+        return String.format("Latency p50/p99/p999: %d/%d/%d ms",
+                e2e.getP50() / 1_000_000, e2e.getP99() / 1_000_000, e2e.getP999() / 1_000_000);
+    }
+
+    private static String overloadText(MetricsSnapshot snapshot) {
+        return "Rejected / Shed / Limited: " + snapshot.rejected + " / " + snapshot.shed + " / " + snapshot.rateLimited;
+    }
+
+    public static void setAutoScalingEnabled(boolean enabled) {
+        autoScaler.setEnabled(enabled);
+    }
+
+    public static boolean isAutoScalingEnabled() {
+        return autoScaler.isEnabled();
+    }
+
+
+
+}
@@ -0,0 +1,192 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the balancer.
+ *
+ * Keeps a fixed number of persistent connections and pipelines framed requests on each.
+ * Every request has an intended send time on a fixed schedule (target rate / connections);
+ * the schedule never slips when the balancer pushes back, so a stall shows up as send lag
+ * instead of silently lowering the offered load (no coordinated omission).
+ * All requests that are due are encoded into one buffer and flushed with a single write.
+ * A reader thread per connection counts the busy bytes the balancer sends for rejected requests.
+ */
+public class LoadGenerator {
+
+    // ====== Config ======
+    private static final int SEND_BUFFER_SIZE = 64 * 1024;
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final double targetRate;       // requests per second, all connections together
+    private final int maxBatch;            // max requests per flush
+    private final long durationNanos;      // 0 = run forever
+    private final byte format;
+    private final int clients;             // distinct client IPs (0 = a random IP per request)
+
+    private final SendStats stats = new SendStats("LoadGenerator");
+
+    public LoadGenerator(String host, int port, int connections, double targetRate,
+                         int maxBatch, long durationSeconds, byte format, int clients) {
+        this.host = host;
+        this.port = port;
+        this.connections = Math.max(1, connections);
+        this.targetRate = targetRate;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.durationNanos = durationSeconds * 1_000_000_000L;
+        this.format = format;
+        this.clients = Math.max(0, clients);
+    }
+
+    /**
+     * Builds a generator from -Dlb.loadgen.* system properties.
+     */
+    public static LoadGenerator fromSystemProperties() {
+        String format = System.getProperty("lb.loadgen.format", "binary");
+        return new LoadGenerator(
+                System.getProperty("lb.loadgen.host", "localhost"),
+                Integer.getInteger("lb.loadgen.port", 8081),
+                Integer.getInteger("lb.loadgen.connections", 8),
+                Double.parseDouble(System.getProperty("lb.loadgen.rate", "10000")),
+                Integer.getInteger("lb.loadgen.batch", 256),
+                Long.getLong("lb.loadgen.duration", 0L),
+                "serialized".equals(format) ? WireProtocol.FORMAT_SERIALIZED : WireProtocol.FORMAT_BINARY,
+                Integer.getInteger("lb.loadgen.clients", 0));
+    }
+
+    /**
+     * Starts one sender thread per connection and reports every second until the duration ends.
+     */
+    public void run() throws InterruptedException {
+        System.out.printf("LoadGenerator: %d connections, target %.0f req/s, batch %d%n",
+                connections, targetRate, maxBatch);
+
+        long start = System.nanoTime();
+        long intervalNanos = (long) (1_000_000_000.0 * connections / targetRate);
+        Thread[] senders = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            // Stagger connections so their schedules interleave instead of firing together
+            long firstSend = start + (intervalNanos * i) / connections;
+            senders[i] = new Thread(() -> sendLoop(firstSend, intervalNanos), "LoadGen-" + i);
+            senders[i].setDaemon(true);
+            senders[i].start();
+        }
+
+        stats.reportWhile(() -> durationNanos == 0 || System.nanoTime() - start < durationNanos);
+        stats.printSummary(start);
+    }
+
+    /**
+     * Sends on one persistent connection following the open-loop schedule.
+     * Reconnects (keeping the schedule) if the connection drops.
+     */
+    private void sendLoop(long firstSend, long intervalNanos) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+        RequestCodec codec = RequestCodec.forFormat(format);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long nextSend = firstSend;
+
+        while (true) {
+            try (SocketChannel channel = connect(host, port, format)) {
+                Thread reader = new Thread(() -> readReplies(channel, stats.busy()), Thread.currentThread().getName() + "-replies");
+                reader.setDaemon(true);
+                reader.start();
+
+                while (true) {
+                    long now = System.nanoTime();
+                    buffer.clear();
+
+                    int batch = 0;
+                    while (nextSend <= now && batch < maxBatch) {
+                        UserRequest request = new UserRequest(clientIP(random), random.nextInt(100) + 1);
+                        if (!codec.encode(request, buffer)) {
+                            break;
+                        }
+                        stats.recordLag(now - nextSend);
+                        nextSend += intervalNanos;
+                        batch++;
+                    }
+
+                    if (batch > 0) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        stats.recordFlush(batch);
+                    } else {
+                        LockSupport.parkNanos(nextSend - now);
+                    }
+                }
+            } catch (IOException e) {
+                stats.recordFailedConnection();
+                System.out.println(Thread.currentThread().getName() + " connection error: " + e.getMessage());
+                LockSupport.parkNanos(500_000_000L);
+            }
+        }
+    }
+
+    /**
+     * Counts busy replies until the connection closes.
+     */
+    static void readReplies(SocketChannel channel, LongAdder busy) {
+        ByteBuffer replies = ByteBuffer.allocate(1024);
+        try {
+            while (channel.read(replies.clear()) >= 0) {
+                replies.flip();
+                int count = 0;
+                while (replies.hasRemaining()) {
+                    if (replies.get() == WireProtocol.RESPONSE_BUSY) {
+                        count++;
+                    }
+                }
+                busy.add(count);
+            }
+        } catch (IOException ignored) {
+            // connection closed by the sender loop
+        }
+    }
+
+    /**
+     * Opens a framed connection to the balancer and completes the HELLO handshake.
+     */
+    static SocketChannel connect(String host, int port, byte format) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+        ByteBuffer hello = ByteBuffer.allocate(WireProtocol.HELLO_LENGTH);
+        hello.putInt(WireProtocol.MAGIC).put(format).flip();
+        while (hello.hasRemaining()) {
+            channel.write(hello);
+        }
+
+        ByteBuffer ack = ByteBuffer.allocate(1);
+        while (ack.hasRemaining()) {
+            if (channel.read(ack) < 0) {
+                channel.close();
+                throw new IOException("connection closed during handshake");
+            }
+        }
+        if (ack.get(0) != format) {
+            channel.close();
+            throw new IOException("balancer rejected format " + format);
+        }
+        return channel;
+    }
+
+    /**
+     * Client IP of the next request: one of the first lb.loadgen.clients addresses
+     * from 10.0.0.1, or any IP when that is 0.
+     */
+    private int clientIP(ThreadLocalRandom random) {
+        return clients == 0 ? random.nextInt() : 0x0A000001 + random.nextInt(clients);
+    }
+}
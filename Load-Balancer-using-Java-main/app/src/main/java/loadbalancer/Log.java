@@ -0,0 +1,129 @@
+package loadbalancer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small asynchronous, level-gated, rate-limited logger.
+ *
+ * Callers only enqueue; a daemon thread does the (synchronized) stdout writes.
+ * Messages above -Dlb.log.rate per second, or that do not fit the queue, are
+ * counted and reported as dropped instead of slowing the caller down.
+ * Hot paths should guard message building with isDebugEnabled().
+ */
+public final class Log {
+
+    // ====== Levels ======
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    public static final int OFF = 4;
+
+    // ====== Config ======
+    private static final int LEVEL = parseLevel(System.getProperty("lb.log.level",
+            Boolean.getBoolean("lb.production") ? "WARN" : "DEBUG"));
+    private static final int MAX_PER_SECOND = Integer.getInteger("lb.log.rate", 200);
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private static final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicInteger windowCount = new AtomicInteger();
+    private static final LongAdder dropped = new LongAdder();
+    private static volatile long windowSecond;
+
+    static {
+        Thread writer = new Thread(Log::writeLoop, "Logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private Log() {
+    }
+
+    public static boolean isDebugEnabled() {
+        return LEVEL <= DEBUG;
+    }
+
+    public static boolean isEnabled(int level) {
+        return level >= LEVEL;
+    }
+
+    public static void debug(String message) {
+        log(DEBUG, message);
+    }
+
+    public static void info(String message) {
+        log(INFO, message);
+    }
+
+    public static void warn(String message) {
+        log(WARN, message);
+    }
+
+    public static void error(String message) {
+        log(ERROR, message);
+    }
+
+    /**
+     * Returns how many messages were dropped by the rate limit or a full queue.
+     */
+    public static long getDroppedMessages() {
+        return dropped.sum();
+    }
+
+    private static void log(int level, String message) {
+        if (level < LEVEL) {
+            return;
+        }
+        if (!tryAcquire() || !queue.offer(message)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Fixed one-second window; a few extra messages at the window edge are fine.
+     */
+    private static boolean tryAcquire() {
+        long second = System.nanoTime() / 1_000_000_000L;
+        if (second != windowSecond) {
+            windowSecond = second;
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= MAX_PER_SECOND;
+    }
+
+    private static void writeLoop() {
+        long reportedDrops = 0;
+        while (true) {
+            try {
+                String message = queue.take();
+                System.out.println(message);
+
+                long drops = dropped.sum();
+                if (drops != reportedDrops && queue.isEmpty()) {
+                    System.out.println("[Log] " + (drops - reportedDrops) + " messages dropped");
+                    reportedDrops = drops;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static int parseLevel(String name) {
+        switch (name.toUpperCase()) {
+            case "DEBUG":
+                return DEBUG;
+            case "INFO":
+                return INFO;
+            case "WARN":
+                return WARN;
+            case "ERROR":
+                return ERROR;
+            default:
+                return OFF;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package loadbalancer;
+
+import java.util.List;
+
+/**
+ * Maglev consistent hashing (Google, NSDI 2016) keyed by the client IP.
+ *
+ * Every server fills slots of a prime-sized lookup table following its own
+ * permutation, taking turns so each server ends up with an almost equal share.
+ * Lookup is a single array read; a membership change moves roughly 1/N of clients.
+ */
+public class MaglevStrategy implements BalancingStrategy {
+
+    private static final int TABLE_SIZE = Integer.getInteger("lb.maglev.tableSize", 65537);  // must be prime
+    private static final int IP_SEED = 0x5bd1e995;
+
+    private volatile Server[] table = new Server[0];
+
+    @Override
+    public String getName() {
+        return "Maglev";
+    }
+
+    @Override
+    public boolean isSticky() {
+        return true;
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        Server[] t = table;
+        if (t.length == 0) {
+            return servers.get(0);
+        }
+        int hash = Hashing.murmur3(request.getPackedIP(), IP_SEED);
+        return t[Integer.remainderUnsigned(hash, t.length)];
+    }
+
+    @Override
+    public void onServersChanged(List<Server> servers) {
+        table = buildTable(servers.toArray(new Server[0]), TABLE_SIZE);
+    }
+
+    /**
+     * Populates the lookup table with the Maglev round-robin permutation fill.
+     */
+    static Server[] buildTable(Server[] servers, int size) {
+        int n = servers.length;
+        if (n == 0) {
+            return new Server[0];
+        }
+
+        int[] offset = new int[n];
+        int[] skip = new int[n];
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++) {
+            int id = servers[i].getServerId();
+            offset[i] = Integer.remainderUnsigned(Hashing.murmur3(id, 0, 0x1234567), size);
+            skip[i] = Integer.remainderUnsigned(Hashing.murmur3(id, 1, 0x7654321), size - 1) + 1;
+        }
+
+        Server[] result = new Server[size];
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((offset[i] + (long) next[i] * skip[i]) % size);
+                while (result[slot] != null) {
+                    next[i]++;
+                    slot = (int) ((offset[i] + (long) next[i] * skip[i]) % size);
+                }
+                result[slot] = servers[i];
+                next[i]++;
+                if (++filled == size) {
+                    return result;
+                }
+            }
+        }
+    }
+}
@@ -1,3 +1,5 @@
+package loadbalancer;
+
 import javax.swing.*;
 import java.awt.*;
 import java.io.ObjectOutputStream;
@@ -8,7 +10,25 @@ public class Main {
     // Shared variable for delay (in milliseconds)
     private static volatile int delay = 100; // Default start delay (in ms)
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+
+        // ====== Load generator mode: persistent pipelined connections, open-loop rate ======
+        if (Boolean.getBoolean("lb.loadgen")) {
+            LoadGenerator.fromSystemProperties().run();
+            return;
+        }
+
+        // ====== Replay mode: stream a recorded request journal back at 1x, Nx or max speed ======
+        if (System.getProperty("lb.replay") != null) {
+            JournalReplay.fromSystemProperties().run();
+            return;
+        }
+
+        // ====== Simulation mode: discrete-event capacity planning on a virtual clock ======
+        if (Boolean.getBoolean("lb.sim")) {
+            Simulator.fromSystemProperties().run();
+            return;
+        }
 
         // ====== Matrix Theme UI for Slider ======
         SwingUtilities.invokeLater(() -> {
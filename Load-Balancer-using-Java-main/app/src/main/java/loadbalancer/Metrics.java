@@ -0,0 +1,192 @@
+package loadbalancer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Balancer-wide metrics and the sampler that closes histogram intervals.
+ *
+ * Every request is timestamped at ingress, dispatch, dequeue and completion
+ * (see UserRequest). Global recorders hold ingress-to-dispatch delay and end-to-end
+ * latency, the latter also per request size class; per-server ones live in
+ * ServerMetrics. Once per -Dlb.metrics.intervalMs the "Metrics" thread rolls every
+ * recorder, so the UI and callers of this API read the same published interval and
+ * cumulative p50/p99/p999 without locking.
+ * Each roll also publishes a MetricsSnapshot for the admin endpoint.
+ */
+public final class Metrics {
+
+    private static final long INTERVAL_MS = Long.getLong("lb.metrics.intervalMs", 1000L);
+
+    private static final LongAdder received = new LongAdder();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder shed = new LongAdder();
+    private static final LongAdder rateLimited = new LongAdder();
+    private static final LongAdder stolen = new LongAdder();
+    private static final LongAdder ejections = new LongAdder();
+    private static final LatencyRecorder dispatchDelay = new LatencyRecorder();
+    private static final LatencyRecorder endToEnd = new LatencyRecorder();
+    private static final LatencyRecorder[] endToEndByClass = new LatencyRecorder[SizeScheduler.classCount()];
+    private static volatile MetricsSnapshot snapshot = MetricsSnapshot.EMPTY;
+
+    static {
+        for (int c = 0; c < endToEndByClass.length; c++) {
+            endToEndByClass[c] = new LatencyRecorder();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts the sampler thread.
+     */
+    public static void start() {
+        Thread sampler = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                roll();
+            }
+        }, "Metrics");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Closes the current interval on every recorder.
+     */
+    static void roll() {
+        dispatchDelay.roll();
+        endToEnd.roll();
+        for (LatencyRecorder recorder : endToEndByClass) {
+            recorder.roll();
+        }
+        for (Server s : LoadBalancer.registry.all()) {
+            s.getMetrics().roll();
+        }
+        snapshot = MetricsSnapshot.capture();
+    }
+
+    static void recordIngress(UserRequest request) {
+        request.setIngressNanos(System.nanoTime());
+        received.increment();
+    }
+
+    static void recordDispatch(UserRequest request) {
+        long now = System.nanoTime();
+        request.setDispatchNanos(now);
+        dispatchDelay.record(now - request.getIngressNanos());
+    }
+
+    static void recordCompletion(UserRequest request, long completedNanos) {
+        long latency = completedNanos - request.getIngressNanos();
+        endToEnd.record(latency);
+        endToEndByClass[SizeScheduler.classOf(request.getRequestSize())].record(latency);
+        completed.increment();
+    }
+
+    static void recordRejected() {
+        rejected.increment();
+    }
+
+    static void recordRejected(int count) {
+        rejected.add(count);
+    }
+
+    static void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    static void recordShed() {
+        shed.increment();
+    }
+
+    static void recordSteal() {
+        stolen.increment();
+    }
+
+    static void recordEjection() {
+        ejections.increment();
+    }
+
+    /**
+     * Requests accepted at ingress.
+     */
+    public static long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Requests finished by any server.
+     */
+    public static long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Requests refused because a bounded queue was full.
+     */
+    public static long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Requests refused at ingress because their client IP was over its rate limit.
+     */
+    public static long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Requests dropped after queueing (drop-oldest or CoDel).
+     */
+    public static long getShed() {
+        return shed.sum();
+    }
+
+    /**
+     * Requests moved from a backed-up server to an idle one by work stealing.
+     */
+    public static long getStolen() {
+        return stolen.sum();
+    }
+
+    /**
+     * Servers taken out of selection by the health checker.
+     */
+    public static long getEjections() {
+        return ejections.sum();
+    }
+
+    /**
+     * Time from ingress until a dispatcher worker handed the request to a server.
+     */
+    public static LatencyRecorder getDispatchDelay() {
+        return dispatchDelay;
+    }
+
+    /**
+     * Time from ingress until a server finished the request.
+     */
+    public static LatencyRecorder getEndToEnd() {
+        return endToEnd;
+    }
+
+    /**
+     * End-to-end latency of requests in one size class (see SizeScheduler).
+     */
+    public static LatencyRecorder getEndToEnd(int sizeClass) {
+        return endToEndByClass[sizeClass];
+    }
+
+    /**
+     * The snapshot published by the last roll.
+     */
+    public static MetricsSnapshot snapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,438 @@
+package loadbalancer;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable view of all balancer and server metrics at the end of one metrics interval.
+ *
+ * The "Metrics" sampler builds a new snapshot after every roll and publishes it with a
+ * single volatile write; the admin endpoint only formats the published object, so a
+ * scrape never touches a queue, a recorder or anything the dispatcher uses. The Swing
+ * UI captures its own snapshots at a higher rate and only ever renders those.
+ */
+public final class MetricsSnapshot {
+
+    /**
+     * Session-affinity table counters; all zero unless the Sticky strategy is active.
+     */
+    public static final class AffinityStats {
+        static final AffinityStats EMPTY = new AffinityStats(null);
+
+        final long hits;
+        final long misses;
+        final long repins;
+        final long spills;
+        final long evictions;
+        final long expirations;
+        final long entries;
+        final long bytes;
+
+        AffinityStats(StickyStrategy sticky) {
+            AffinityTable table = sticky == null ? null : sticky.getTable();
+            this.hits = sticky == null ? 0 : sticky.getHits();
+            this.misses = sticky == null ? 0 : sticky.getMisses();
+            this.repins = sticky == null ? 0 : sticky.getRepins();
+            this.spills = sticky == null ? 0 : sticky.getSpills();
+            this.evictions = table == null ? 0 : table.getEvictions();
+            this.expirations = table == null ? 0 : table.getExpirations();
+            this.entries = table == null ? 0 : table.getEntries();
+            this.bytes = table == null ? 0 : table.getBytes();
+        }
+
+        /**
+         * Fraction of requests sent to their pinned server.
+         */
+        double hitRate() {
+            long lookups = hits + misses + repins + spills;
+            return lookups == 0 ? 0 : hits / (double) lookups;
+        }
+    }
+
+    /**
+     * One server's row.
+     */
+    public static final class ServerStats {
+        final int id;
+        final int weight;
+        final String upstream;
+        final Server.Status status;
+        final boolean ejected;
+        final int consecutiveFailures;
+        final int pending;
+        final int queued;
+        final int concurrency;
+        final long processed;
+        final long connectFailures;
+        final double loadPercent;
+        final double serviceEwmaNanos;
+        final LatencyStats queueWait;
+        final LatencyStats serviceTime;
+
+        ServerStats(Server s) {
+            this.id = s.getServerId();
+            this.weight = s.getWeight();
+            this.upstream = s.getUpstream() == null ? null : hostPort(s.getUpstream());
+            this.status = s.getStatus();
+            this.ejected = s.getHealth().isEjected();
+            this.consecutiveFailures = s.getHealth().getConsecutiveFailures();
+            this.pending = s.getPendingRequests();
+            this.queued = s.getQueuedRequests();
+            this.concurrency = s.getConcurrencyLimit();
+            this.processed = s.getTotalProcessedRequests();
+            this.connectFailures = s.getConnectFailures();
+            this.loadPercent = s.getLoadPercent();
+            this.serviceEwmaNanos = s.getServiceTimeEwmaNanos();
+            this.queueWait = s.getMetrics().getQueueWait().getInterval();
+            this.serviceTime = s.getMetrics().getServiceTime().getInterval();
+        }
+    }
+
+    public static final MetricsSnapshot EMPTY = new MetricsSnapshot();
+
+    final long timestampMillis;
+    final String algorithm;
+    final boolean autoScaling;
+    final long received;
+    final long dispatched;
+    final long completed;
+    final long rejected;
+    final long shed;
+    final long rateLimited;
+    final long rateLimitClients;
+    final long rateLimitEvictions;
+    final long stolen;
+    final long ejections;
+    final int dispatcherQueued;
+    final LatencyStats dispatchDelay;
+    final LatencyStats dispatchDelayCumulative;
+    final LatencyStats endToEnd;
+    final LatencyStats endToEndCumulative;
+    final LatencyStats[] endToEndByClass;             // interval, indexed by size class
+    final LatencyStats[] endToEndByClassCumulative;
+    final AffinityStats affinity;
+    final List<ServerStats> servers;
+
+    private MetricsSnapshot() {
+        this.timestampMillis = 0;
+        this.algorithm = "";
+        this.autoScaling = false;
+        this.received = 0;
+        this.dispatched = 0;
+        this.completed = 0;
+        this.rejected = 0;
+        this.shed = 0;
+        this.rateLimited = 0;
+        this.rateLimitClients = 0;
+        this.rateLimitEvictions = 0;
+        this.stolen = 0;
+        this.ejections = 0;
+        this.dispatcherQueued = 0;
+        this.dispatchDelay = LatencyStats.EMPTY;
+        this.dispatchDelayCumulative = LatencyStats.EMPTY;
+        this.endToEnd = LatencyStats.EMPTY;
+        this.endToEndCumulative = LatencyStats.EMPTY;
+        this.endToEndByClass = new LatencyStats[SizeScheduler.classCount()];
+        this.endToEndByClassCumulative = new LatencyStats[SizeScheduler.classCount()];
+        Arrays.fill(endToEndByClass, LatencyStats.EMPTY);
+        Arrays.fill(endToEndByClassCumulative, LatencyStats.EMPTY);
+        this.affinity = AffinityStats.EMPTY;
+        this.servers = List.of();
+    }
+
+    private MetricsSnapshot(List<ServerStats> servers) {
+        this.timestampMillis = System.currentTimeMillis();
+        this.algorithm = BalancingStrategies.current().getName();
+        this.autoScaling = LoadBalancer.isAutoScalingEnabled();
+        this.received = Metrics.getReceived();
+        this.dispatched = LoadBalancer.totalRequests.sum();
+        this.completed = Metrics.getCompleted();
+        this.rejected = Metrics.getRejected();
+        this.shed = Metrics.getShed();
+        this.rateLimited = Metrics.getRateLimited();
+        this.rateLimitClients = LoadBalancer.getRateLimitedClients();
+        this.rateLimitEvictions = LoadBalancer.getRateLimitEvictions();
+        this.stolen = Metrics.getStolen();
+        this.ejections = Metrics.getEjections();
+        this.dispatcherQueued = LoadBalancer.dispatcher.getQueuedRequests();
+        this.dispatchDelay = Metrics.getDispatchDelay().getInterval();
+        this.dispatchDelayCumulative = Metrics.getDispatchDelay().getCumulative();
+        this.endToEnd = Metrics.getEndToEnd().getInterval();
+        this.endToEndCumulative = Metrics.getEndToEnd().getCumulative();
+        this.endToEndByClass = new LatencyStats[SizeScheduler.classCount()];
+        this.endToEndByClassCumulative = new LatencyStats[SizeScheduler.classCount()];
+        for (int c = 0; c < endToEndByClass.length; c++) {
+            endToEndByClass[c] = Metrics.getEndToEnd(c).getInterval();
+            endToEndByClassCumulative[c] = Metrics.getEndToEnd(c).getCumulative();
+        }
+        BalancingStrategy strategy = BalancingStrategies.current();
+        this.affinity = strategy instanceof StickyStrategy ? new AffinityStats((StickyStrategy) strategy) : AffinityStats.EMPTY;
+        this.servers = servers;
+    }
+
+    /**
+     * Captures the current state. Called by the metrics sampler after each roll and by
+     * the UI refresh ticker; never by the dispatcher.
+     */
+    static MetricsSnapshot capture() {
+        List<ServerStats> rows = new ArrayList<>();
+        for (Server s : LoadBalancer.registry.all()) {
+            rows.add(new ServerStats(s));
+        }
+        return new MetricsSnapshot(List.copyOf(rows));
+    }
+
+    /**
+     * Number of servers that were accepting new requests (not draining, not ejected).
+     */
+    int activeServers() {
+        int n = 0;
+        for (ServerStats s : servers) {
+            if (s.status == Server.Status.ACTIVE && !s.ejected) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // ================= Prometheus text format =================
+
+    /**
+     * Formats the snapshot in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        counter(sb, "lb_requests_received_total", "Requests accepted at ingress.", received);
+        counter(sb, "lb_requests_dispatched_total", "Requests handed to a server.", dispatched);
+        counter(sb, "lb_requests_completed_total", "Requests finished by a server.", completed);
+        counter(sb, "lb_requests_rejected_total", "Requests refused by a full queue.", rejected);
+        counter(sb, "lb_requests_shed_total", "Queued requests dropped by the admission policy.", shed);
+        counter(sb, "lb_requests_rate_limited_total", "Requests refused because their client IP was over its rate.", rateLimited);
+        gauge(sb, "lb_rate_limit_clients", "Client IPs tracked by the rate limiter.", rateLimitClients);
+        counter(sb, "lb_rate_limit_evictions_total", "Rate-limiter clients displaced from a full table set.", rateLimitEvictions);
+        counter(sb, "lb_requests_stolen_total", "Requests moved between servers by work stealing.", stolen);
+        counter(sb, "lb_ejections_total", "Servers taken out of selection by health checks.", ejections);
+        header(sb, "lb_affinity_lookups_total", "Sticky strategy picks by outcome.", "counter");
+        affinityLookup(sb, "hit", affinity.hits);
+        affinityLookup(sb, "miss", affinity.misses);
+        affinityLookup(sb, "repin", affinity.repins);
+        affinityLookup(sb, "spill", affinity.spills);
+        header(sb, "lb_affinity_evictions_total", "Affinity entries dropped, by reason.", "counter");
+        sb.append("lb_affinity_evictions_total{reason=\"lru\"} ").append(affinity.evictions).append('\n');
+        sb.append("lb_affinity_evictions_total{reason=\"ttl\"} ").append(affinity.expirations).append('\n');
+        gauge(sb, "lb_affinity_entries", "Client slots in use in the affinity table.", affinity.entries);
+        gauge(sb, "lb_affinity_table_bytes", "Heap size of the affinity table.", affinity.bytes);
+        gauge(sb, "lb_dispatcher_queued", "Requests waiting in dispatcher shards.", dispatcherQueued);
+        gauge(sb, "lb_autoscaling_enabled", "1 if the auto-scaler is on.", autoScaling ? 1 : 0);
+
+        header(sb, "lb_servers", "Servers by lifecycle state.", "gauge");
+        for (Server.Status st : Server.Status.values()) {
+            long n = servers.stream().filter(s -> s.status == st).count();
+            sb.append("lb_servers{state=\"").append(st.name().toLowerCase(Locale.ROOT)).append("\"} ").append(n).append('\n');
+        }
+
+        summary(sb, "lb_dispatch_delay_seconds", "Ingress to dispatch; quantiles over the last interval.",
+                dispatchDelay, dispatchDelayCumulative);
+        summary(sb, "lb_end_to_end_latency_seconds", "Ingress to completion; quantiles over the last interval.",
+                endToEnd, endToEndCumulative);
+        header(sb, "lb_size_class_latency_seconds", "Ingress to completion by request size class; quantiles over the last interval.", "summary");
+        for (int c = 0; c < endToEndByClass.length; c++) {
+            String label = "class=\"" + SizeScheduler.label(c) + "\"";
+            LatencyStats totals = endToEndByClassCumulative[c];
+            quantiles(sb, "lb_size_class_latency_seconds", label + ",", endToEndByClass[c]);
+            sb.append("lb_size_class_latency_seconds_count{").append(label).append("} ").append(totals.getCount()).append('\n');
+            sb.append("lb_size_class_latency_seconds_sum{").append(label).append("} ")
+                    .append(seconds((long) (totals.getMean() * totals.getCount()))).append('\n');
+        }
+
+        header(sb, "lb_server_ejected", "1 while the server is ejected by health checks.", "gauge");
+        for (ServerStats s : servers) {
+            sb.append("lb_server_ejected").append(serverLabel(s)).append(' ').append(s.ejected ? 1 : 0).append('\n');
+        }
+        header(sb, "lb_server_pending", "Active plus queued requests.", "gauge");
+        for (ServerStats s : servers) {
+            sb.append("lb_server_pending").append(serverLabel(s)).append(' ').append(s.pending).append('\n');
+        }
+        header(sb, "lb_server_queued", "Requests waiting in the server queue.", "gauge");
+        for (ServerStats s : servers) {
+            sb.append("lb_server_queued").append(serverLabel(s)).append(' ').append(s.queued).append('\n');
+        }
+        header(sb, "lb_server_processed_total", "Requests finished by the server.", "counter");
+        for (ServerStats s : servers) {
+            sb.append("lb_server_processed_total").append(serverLabel(s)).append(' ').append(s.processed).append('\n');
+        }
+        header(sb, "lb_server_connect_failures_total", "Proxy connections whose upstream connect failed.", "counter");
+        for (ServerStats s : servers) {
+            sb.append("lb_server_connect_failures_total").append(serverLabel(s)).append(' ')
+                    .append(s.connectFailures).append('\n');
+        }
+        header(sb, "lb_server_service_time_ewma_seconds", "Peak-EWMA service time.", "gauge");
+        for (ServerStats s : servers) {
+            sb.append("lb_server_service_time_ewma_seconds").append(serverLabel(s)).append(' ')
+                    .append(seconds((long) s.serviceEwmaNanos)).append('\n');
+        }
+        header(sb, "lb_server_queue_wait_seconds", "Dispatch to dequeue, last interval.", "summary");
+        for (ServerStats s : servers) {
+            quantiles(sb, "lb_server_queue_wait_seconds", "server=\"" + s.id + "\",", s.queueWait);
+        }
+        header(sb, "lb_server_service_time_seconds", "Dequeue to completion, last interval.", "summary");
+        for (ServerStats s : servers) {
+            quantiles(sb, "lb_server_service_time_seconds", "server=\"" + s.id + "\",", s.serviceTime);
+        }
+        return sb.toString();
+    }
+
+    private static void affinityLookup(StringBuilder sb, String result, long value) {
+        sb.append("lb_affinity_lookups_total{result=\"").append(result).append("\"} ").append(value).append('\n');
+    }
+
+    private static void header(StringBuilder sb, String name, String help, String type) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, help, "counter");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, help, "gauge");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder sb, String name, String help,
+                                LatencyStats window, LatencyStats totals) {
+        header(sb, name, help, "summary");
+        quantiles(sb, name, "", window);
+        sb.append(name).append("_count ").append(totals.getCount()).append('\n');
+        sb.append(name).append("_sum ").append(seconds((long) (totals.getMean() * totals.getCount()))).append('\n');
+    }
+
+    private static void quantiles(StringBuilder sb, String name, String labels, LatencyStats stats) {
+        sb.append(name).append('{').append(labels).append("quantile=\"0.5\"} ").append(seconds(stats.getP50())).append('\n');
+        sb.append(name).append('{').append(labels).append("quantile=\"0.99\"} ").append(seconds(stats.getP99())).append('\n');
+        sb.append(name).append('{').append(labels).append("quantile=\"0.999\"} ").append(seconds(stats.getP999())).append('\n');
+    }
+
+    private static String serverLabel(ServerStats s) {
+        return "{server=\"" + s.id + "\"}";
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    // ================= JSON =================
+
+    /**
+     * Formats the balancer summary plus every server as a JSON object.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append('{');
+        field(sb, "timestamp", timestampMillis).append(',');
+        sb.append("\"algorithm\":\"").append(algorithm).append("\",");
+        sb.append("\"autoScaling\":").append(autoScaling).append(',');
+        field(sb, "received", received).append(',');
+        field(sb, "dispatched", dispatched).append(',');
+        field(sb, "completed", completed).append(',');
+        field(sb, "rejected", rejected).append(',');
+        field(sb, "shed", shed).append(',');
+        field(sb, "rateLimited", rateLimited).append(',');
+        field(sb, "rateLimitClients", rateLimitClients).append(',');
+        field(sb, "rateLimitEvictions", rateLimitEvictions).append(',');
+        field(sb, "stolen", stolen).append(',');
+        field(sb, "ejections", ejections).append(',');
+        field(sb, "dispatcherQueued", dispatcherQueued).append(',');
+        latency(sb, "dispatchDelay", dispatchDelay).append(',');
+        latency(sb, "endToEnd", endToEnd).append(',');
+        latency(sb, "endToEndCumulative", endToEndCumulative).append(',');
+        bySizeClass(sb, "endToEndBySizeClass", endToEndByClass).append(',');
+        bySizeClass(sb, "endToEndBySizeClassCumulative", endToEndByClassCumulative).append(',');
+        affinityJson(sb).append(',');
+        sb.append("\"servers\":").append(serversJson());
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Formats the server rows as a JSON array.
+     */
+    public String serversJson() {
+        StringBuilder sb = new StringBuilder(256 * (servers.size() + 1));
+        sb.append('[');
+        for (int i = 0; i < servers.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            ServerStats s = servers.get(i);
+            sb.append('{');
+            field(sb, "id", s.id).append(',');
+            field(sb, "weight", s.weight).append(',');
+            if (s.upstream != null) {
+                sb.append("\"upstream\":\"").append(s.upstream).append("\",");
+            }
+            sb.append("\"status\":\"").append(s.status).append("\",");
+            sb.append("\"ejected\":").append(s.ejected).append(',');
+            field(sb, "consecutiveFailures", s.consecutiveFailures).append(',');
+            field(sb, "pending", s.pending).append(',');
+            field(sb, "queued", s.queued).append(',');
+            field(sb, "concurrency", s.concurrency).append(',');
+            field(sb, "processed", s.processed).append(',');
+            field(sb, "connectFailures", s.connectFailures).append(',');
+            sb.append("\"loadPercent\":").append(String.format(Locale.ROOT, "%.1f", s.loadPercent)).append(',');
+            field(sb, "serviceEwmaMs", (long) (s.serviceEwmaNanos / 1_000_000)).append(',');
+            latency(sb, "queueWait", s.queueWait).append(',');
+            latency(sb, "serviceTime", s.serviceTime);
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    static String hostPort(InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    private StringBuilder affinityJson(StringBuilder sb) {
+        sb.append("\"affinity\":{");
+        field(sb, "hits", affinity.hits).append(',');
+        field(sb, "misses", affinity.misses).append(',');
+        field(sb, "repins", affinity.repins).append(',');
+        field(sb, "spills", affinity.spills).append(',');
+        sb.append("\"hitRate\":").append(String.format(Locale.ROOT, "%.4f", affinity.hitRate())).append(',');
+        field(sb, "evictions", affinity.evictions).append(',');
+        field(sb, "expirations", affinity.expirations).append(',');
+        field(sb, "entries", affinity.entries).append(',');
+        field(sb, "bytes", affinity.bytes);
+        return sb.append('}');
+    }
+
+    private static StringBuilder field(StringBuilder sb, String name, long value) {
+        return sb.append('"').append(name).append("\":").append(value);
+    }
+
+    private static StringBuilder bySizeClass(StringBuilder sb, String name, LatencyStats[] stats) {
+        sb.append('"').append(name).append("\":{");
+        for (int c = 0; c < stats.length; c++) {
+            if (c > 0) {
+                sb.append(',');
+            }
+            latency(sb, SizeScheduler.label(c), stats[c]);
+        }
+        return sb.append('}');
+    }
+
+    private static StringBuilder latency(StringBuilder sb, String name, LatencyStats stats) {
+        sb.append('"').append(name).append("\":{");
+        field(sb, "count", stats.getCount()).append(',');
+        sb.append("\"meanMs\":").append(String.format(Locale.ROOT, "%.3f", stats.getMean() / 1e6)).append(',');
+        sb.append("\"p50Ms\":").append(stats.getP50() / 1e6).append(',');
+        sb.append("\"p99Ms\":").append(stats.getP99() / 1e6).append(',');
+        sb.append("\"p999Ms\":").append(stats.getP999() / 1e6).append(',');
+        sb.append("\"maxMs\":").append(stats.getMax() / 1e6);
+        return sb.append('}');
+    }
+}
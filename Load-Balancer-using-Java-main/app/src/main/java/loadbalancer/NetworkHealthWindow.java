@@ -1,17 +1,19 @@
+package loadbalancer;
+
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.util.List;
 
 public class NetworkHealthWindow extends JFrame {
+    private static final Font FONT = new Font("Consolas", Font.BOLD, 14);
+
     private final JTable table;
-    private final DefaultTableModel tableModel;
+    private final ServerTableModel tableModel;
 
     public NetworkHealthWindow() {
         setTitle("Network Health Monitor");
-        setSize(600, 400);
+        setSize(1100, 400);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout());
 
@@ -19,26 +21,20 @@ public class NetworkHealthWindow extends JFrame {
         getContentPane().setBackground(Color.BLACK);
 
         // --- Server metrics table ---
-        String[] columns = {"Server ID", "Connections", "Load (ms)", "Load %", "Status"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Table is read-only
-            }
-        };
+        tableModel = new ServerTableModel(); // read-only
 
         table = new JTable(tableModel);
         table.setFillsViewportHeight(true);
         table.setBackground(Color.BLACK);
         table.setForeground(Color.GREEN);
-        table.setFont(new Font("Consolas", Font.BOLD, 14));
+        table.setFont(FONT);
         table.setGridColor(new Color(0, 100, 0)); // Dark green grid
 
         // --- Header styling ---
         JTableHeader header = table.getTableHeader();
         header.setBackground(Color.BLACK);
         header.setForeground(Color.GREEN);
-        header.setFont(new Font("Consolas", Font.BOLD, 14));
+        header.setFont(FONT);
         ((DefaultTableCellRenderer) header.getDefaultRenderer())
                 .setHorizontalAlignment(SwingConstants.CENTER);
 
@@ -47,21 +43,21 @@ public class NetworkHealthWindow extends JFrame {
         centerRenderer.setHorizontalAlignment(SwingConstants.CENTER);
         centerRenderer.setBackground(Color.BLACK);
         centerRenderer.setForeground(Color.GREEN);
-        centerRenderer.setFont(new Font("Consolas", Font.BOLD, 14));
+        centerRenderer.setFont(FONT);
 
         for (int i = 0; i < table.getColumnCount(); i++) {
             table.getColumnModel().getColumn(i).setCellRenderer(centerRenderer);
         }
 
         // --- Special coloring for Status column ---
-        table.getColumnModel().getColumn(4).setCellRenderer(new DefaultTableCellRenderer() {
+        table.getColumnModel().getColumn(ServerTableModel.COL_STATUS).setCellRenderer(new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value,
                                                            boolean isSelected, boolean hasFocus,
                                                            int row, int column) {
                 Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
                 setHorizontalAlignment(SwingConstants.CENTER);
-                setFont(new Font("Consolas", Font.BOLD, 14));
+                setFont(FONT);
                 setBackground(Color.BLACK);
 
                 if ("Good".equals(value)) {
@@ -70,6 +66,8 @@ public class NetworkHealthWindow extends JFrame {
                     setForeground(Color.CYAN);
                 } else if ("Bad".equals(value)) {
                     setForeground(Color.RED);
+                } else if ("Ejected".equals(value)) {
+                    setForeground(Color.ORANGE);
                 } else {
                     setForeground(Color.WHITE);
                 }
@@ -78,6 +76,14 @@ public class NetworkHealthWindow extends JFrame {
             }
         });
 
+        // --- Sparklines: per-server history, one point per second ---
+        table.getColumnModel().getColumn(ServerTableModel.COL_THROUGHPUT)
+                .setCellRenderer(new Sparkline.Renderer("req/s"));
+        table.getColumnModel().getColumn(ServerTableModel.COL_LATENCY)
+                .setCellRenderer(new Sparkline.Renderer("ms"));
+        table.getColumnModel().getColumn(ServerTableModel.COL_THROUGHPUT).setPreferredWidth(180);
+        table.getColumnModel().getColumn(ServerTableModel.COL_LATENCY).setPreferredWidth(180);
+
         // --- Scroll pane ---
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.getViewport().setBackground(Color.BLACK);
@@ -87,33 +93,9 @@ public class NetworkHealthWindow extends JFrame {
     }
 
     /**
-     * Updates the health monitor table with the latest server metrics.
+     * Shows the given snapshot; only the cells that changed are repainted. EDT only.
      */
-    public void updateData(List<Server> servers, int serverId) {
-        SwingUtilities.invokeLater(() -> {
-            tableModel.setRowCount(0); // Clear table
-
-            for (Server s : servers) {
-                double loadPercent = s.getLoadPercent();
-                long simulatedLoadMs = (long) ((loadPercent / 100.0) * 5000);
-
-                String status;
-                if (loadPercent < 50) {
-                    status = "Good";
-                } else if (loadPercent < 80) {
-                    status = "Neutral";
-                } else {
-                    status = "Bad";
-                }
-
-                tableModel.addRow(new Object[]{
-                        s.getServerId(),
-                        s.getCurrentConnections(),
-                        simulatedLoadMs,
-                        String.format("%.1f", loadPercent) + "%",
-                        status
-                });
-            }
-        });
+    public void showSnapshot(MetricsSnapshot snapshot) {
+        tableModel.apply(snapshot);
     }
 }
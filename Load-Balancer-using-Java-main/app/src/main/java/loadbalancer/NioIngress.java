@@ -0,0 +1,340 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking ingress built on a ServerSocketChannel and a small pool of selector threads.
+ *
+ * One acceptor thread hands new connections round-robin to the selector threads.
+ * Each selector thread owns a single reusable read buffer; only the unfinished tail
+ * of a frame is kept per connection between reads.
+ * Requests rejected by a full dispatcher shard are answered with busy bytes, one write per read.
+ * See WireProtocol for the byte layout.
+ */
+public class NioIngress {
+
+    // ====== Config ======
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // ====== Connection modes ======
+    private static final int MODE_UNKNOWN = 0;
+    private static final int MODE_LEGACY = 1;
+    private static final int MODE_FRAMED = 2;
+
+    private final int port;
+    private final Worker[] workers;
+    private ServerSocketChannel serverChannel;
+    private int nextWorker = 0;
+
+    /**
+     * Creates an ingress listening on the given port with the given number of selector threads.
+     */
+    public NioIngress(int port, int selectorThreads) {
+        this.port = port;
+        this.workers = new Worker[Math.max(1, selectorThreads)];
+    }
+
+    /**
+     * Binds the port and starts the acceptor and selector threads.
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i, Selector.open());
+            workers[i].start();
+        }
+
+        new Thread(this::acceptLoop, "Ingress-Acceptor").start();
+    }
+
+    /**
+     * Stops accepting and closes every selector (and with it every open connection).
+     */
+    public void shutdown() {
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        for (Worker w : workers) {
+            w.shutdown();
+        }
+    }
+
+    /**
+     * Blocking accept loop — only hands sockets over, never reads from them.
+     */
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                Worker worker = workers[nextWorker];
+                nextWorker = (nextWorker + 1) % workers.length;
+                worker.register(channel);
+
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    Log.warn("Ingress accept error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-connection decode state. Holds only the bytes of an unfinished frame.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final int shard;
+        int mode = MODE_UNKNOWN;
+        RequestCodec codec;
+        ByteBuffer pending;
+        int busy;                 // rejected requests not yet answered
+
+        Connection(SocketChannel channel, int shard) {
+            this.channel = channel;
+            this.shard = shard;
+        }
+
+        /**
+         * Keeps the unread tail of the shared buffer for the next read, reusing storage where possible.
+         */
+        void stash(ByteBuffer from) {
+            int remaining = from.remaining();
+            if (pending == null || pending.capacity() < remaining) {
+                pending = ByteBuffer.allocate(Math.max(remaining, 256));
+            }
+            pending.clear();
+            pending.put(from);
+        }
+    }
+
+    /**
+     * Selector thread. Owns its selector, its connections and one shared read buffer.
+     */
+    private static final class Worker extends Thread {
+        private final Selector selector;
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ByteBuffer busyReplies = busyReplies();
+        private volatile boolean running = true;
+
+        Worker(int index, Selector selector) {
+            super("Ingress-" + index);
+            this.selector = selector;
+        }
+
+        void register(SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            running = false;
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerNewChannels();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    Log.error(getName() + " stopped: " + e.getMessage());
+                }
+            }
+        }
+
+        private void registerNewChannels() {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(channel, LoadBalancer.dispatcher.assignShard()));
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        private void read(SelectionKey key) {
+            Connection c = (Connection) key.attachment();
+            ByteBuffer buf = readBuffer;
+            buf.clear();
+
+            if (c.pending != null && c.pending.position() > 0) {
+                c.pending.flip();
+                buf.put(c.pending);
+                c.pending.clear();
+            }
+
+            int n;
+            try {
+                n = c.channel.read(buf);
+            } catch (IOException e) {
+                close(key);
+                return;
+            }
+            buf.flip();
+
+            boolean eof = n < 0;
+            try {
+                decode(c, buf, eof);
+                if (c.busy > 0) {
+                    answerBusy(c);
+                }
+            } catch (Exception e) {
+                Log.warn("Ingress dropped connection: " + e.getMessage());
+                close(key);
+                return;
+            }
+
+            if (eof) {
+                close(key);
+            } else if (buf.hasRemaining()) {
+                c.stash(buf);
+            }
+        }
+
+        /**
+         * Decodes every complete request in the buffer, leaving any partial frame unread.
+         */
+        private void decode(Connection c, ByteBuffer buf, boolean eof) throws Exception {
+            while (true) {
+                switch (c.mode) {
+                    case MODE_UNKNOWN:
+                        if (buf.remaining() < 2) {
+                            return;
+                        }
+                        if (buf.getShort(buf.position()) == WireProtocol.STREAM_MAGIC) {
+                            if (!WireProtocol.SERIALIZED_ALLOWED) {
+                                throw new IOException("serialized requests disabled");
+                            }
+                            c.mode = MODE_LEGACY;
+                            break;
+                        }
+                        if (buf.remaining() < WireProtocol.HELLO_LENGTH) {
+                            return;
+                        }
+                        if (buf.getInt() != WireProtocol.MAGIC) {
+                            throw new IOException("bad preamble");
+                        }
+                        byte format = buf.get();
+                        byte accepted = WireProtocol.acceptFormat(format);
+                        c.channel.write(ByteBuffer.wrap(new byte[]{accepted}));
+                        if (accepted == WireProtocol.FORMAT_REJECTED) {
+                            throw new IOException("unsupported format " + format);
+                        }
+                        c.codec = RequestCodec.forFormat(accepted);
+                        c.mode = MODE_FRAMED;
+                        break;
+
+                    case MODE_LEGACY:
+                        // One serialized object per connection; the client closes when done
+                        if (buf.remaining() > WireProtocol.MAX_FRAME_LENGTH) {
+                            throw new IOException("legacy request too large");
+                        }
+                        if (!eof) {
+                            return;
+                        }
+                        UserRequest legacy = SerializedRequestCodec.INSTANCE.decode(buf, buf.remaining());
+                        if (!LoadBalancer.submitRequest(legacy, c.shard)) {
+                            c.busy++;
+                        }
+                        return;
+
+                    case MODE_FRAMED:
+                        if (buf.remaining() < WireProtocol.FRAME_HEADER_LENGTH) {
+                            return;
+                        }
+                        int frameLength = buf.getInt(buf.position());
+                        if (frameLength <= 0 || frameLength > WireProtocol.MAX_FRAME_LENGTH) {
+                            throw new IOException("bad frame length " + frameLength);
+                        }
+                        if (buf.remaining() < WireProtocol.FRAME_HEADER_LENGTH + frameLength) {
+                            return;
+                        }
+                        buf.position(buf.position() + WireProtocol.FRAME_HEADER_LENGTH);
+                        if (!LoadBalancer.submitRequest(c.codec.decode(buf, frameLength), c.shard)) {
+                            c.busy++;
+                        }
+                        break;
+
+                    default:
+                        throw new IllegalStateException("mode " + c.mode);
+                }
+            }
+        }
+
+        /**
+         * Writes one busy byte per rejected request without blocking.
+         * If the client is not reading (or already gone), the rest are dropped:
+         * a busy answer must never stall ingress.
+         */
+        private void answerBusy(Connection c) {
+            int count = c.busy;
+            c.busy = 0;
+            try {
+                while (count > 0) {
+                    busyReplies.clear().limit(Math.min(count, busyReplies.capacity()));
+                    int written = c.channel.write(busyReplies);
+                    if (written == 0) {
+                        return;
+                    }
+                    count -= written;
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private static ByteBuffer busyReplies() {
+            byte[] replies = new byte[1024];
+            Arrays.fill(replies, WireProtocol.RESPONSE_BUSY);
+            return ByteBuffer.wrap(replies);
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            closeQuietly(key.channel());
+        }
+
+        private static void closeQuietly(Channel channel) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package loadbalancer;
+
+/**
+ * Peak-sensitive exponentially weighted moving average of service time.
+ *
+ * A sample above the current value is taken immediately (so a slowing server is
+ * penalised at once); lower samples are blended in with a time-based decay,
+ * so the average recovers over roughly one decay window instead of a fixed
+ * number of requests. Readers never block.
+ */
+public class PeakEwma {
+
+    private final double decayNanos;
+    private volatile double value;
+    private long lastUpdateNanos;
+
+    /**
+     * Creates an average that starts at initialNanos and decays over decayNanos.
+     */
+    public PeakEwma(long initialNanos, long decayNanos) {
+        this.value = initialNanos;
+        this.decayNanos = decayNanos;
+        this.lastUpdateNanos = System.nanoTime();
+    }
+
+    /**
+     * Records one observed service time.
+     */
+    public void observe(long sampleNanos) {
+        observe(sampleNanos, System.nanoTime());
+    }
+
+    /**
+     * Records one observed service time at the given time (the simulator's virtual clock).
+     */
+    public synchronized void observe(long sampleNanos, long now) {
+        double current = value;
+        if (sampleNanos > current) {
+            value = sampleNanos;
+        } else {
+            double w = Math.exp(-Math.max(0, now - lastUpdateNanos) / decayNanos);
+            value = current * w + sampleNanos * (1.0 - w);
+        }
+        lastUpdateNanos = now;
+    }
+
+    /**
+     * Returns the current average in nanoseconds.
+     */
+    public double get() {
+        return value;
+    }
+}
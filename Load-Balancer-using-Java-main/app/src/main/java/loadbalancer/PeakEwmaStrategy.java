@@ -0,0 +1,28 @@
+package loadbalancer;
+
+import java.util.List;
+
+/**
+ * Latency-aware power of two choices (peak EWMA, as in Finagle/Linkerd).
+ *
+ * Each server's cost is its peak-EWMA service time multiplied by (pending + 1),
+ * i.e. the expected wait for a new request. Two random servers are compared and
+ * the cheaper one wins, so slow or backed-up servers shed traffic within a few
+ * completions without any global scan.
+ */
+public class PeakEwmaStrategy implements BalancingStrategy {
+
+    @Override
+    public String getName() {
+        return "PeakEWMA";
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        return BalancingStrategies.cheaperOfTwo(servers, 0, servers.size(), PeakEwmaStrategy::cost);
+    }
+
+    private static double cost(Server server) {
+        return server.getServiceTimeEwmaNanos() * (server.getPendingRequests() + 1);
+    }
+}
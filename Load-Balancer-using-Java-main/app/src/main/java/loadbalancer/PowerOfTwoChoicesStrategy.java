@@ -0,0 +1,21 @@
+package loadbalancer;
+
+import java.util.List;
+
+/**
+ * Power of two choices: sample two distinct random servers and pick the one with
+ * fewer pending requests. Near least-connections balance with O(1) work and no
+ * shared state, so dispatcher workers never contend.
+ */
+public class PowerOfTwoChoicesStrategy implements BalancingStrategy {
+
+    @Override
+    public String getName() {
+        return "P2C";
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        return BalancingStrategies.cheaperOfTwo(servers, 0, servers.size(), Server::getPendingRequests);
+    }
+}
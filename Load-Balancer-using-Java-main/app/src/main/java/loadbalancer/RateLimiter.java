@@ -0,0 +1,216 @@
+package loadbalancer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-client token buckets, checked at ingress before a request is queued.
+ *
+ * Each client IP gets -Dlb.ratelimit.rate requests per second with bursts of up to
+ * -Dlb.ratelimit.burst. A bucket is kept as one long, its theoretical arrival time (GCRA,
+ * the virtual-scheduling form of a token bucket): a request is allowed if the bucket's
+ * time minus now is within the burst, and then pushes the time on by 1/rate. A bucket
+ * whose time has passed is full again and carries no state.
+ *
+ * Buckets live in one primitive long[] of [key, time] pairs, so millions of clients
+ * cost no objects or boxing. The table is set-associative: an IP hashes to a set of WAYS
+ * adjacent slots, and a lookup reads at most those. A new client takes a free slot, or
+ * evicts the slot in its set that has been idle the longest; the evicted client's next
+ * request then starts with a full bucket. To take a slot it first CASes the slot's time
+ * from the value it saw to CLAIMING, so a slot used or taken since is left alone, then
+ * swaps in its key and publishes its bucket. A request that finds its slot changing
+ * hands looks again, so none is charged against another client's time. Updates are
+ * lock-free CAS loops on the bucket's own slot. The "RateLimiter" thread sweeps the
+ * table like a clock hand, freeing slots whose buckets are full again. That eviction is
+ * lossless. A request racing it is at worst allowed once more.
+ *
+ * Enabled with a positive -Dlb.ratelimit.rate. Limited requests are answered busy and
+ * counted as rate limited.
+ */
+final class RateLimiter {
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int WAYS = 8;                      // slots per set: two cache lines
+    private static final long OCCUPIED = 1L << 32;          // key = OCCUPIED | unsigned IP; 0 = free
+    private static final long CLAIMING = Long.MIN_VALUE;    // time of a slot changing hands
+    private static final int HASH_SEED = 0x52415445;
+    private static final long SWEEP_MILLIS = 100;
+    private static final int SWEEPS_PER_PASS = 10;          // whole table once a second
+    private static final int MAX_ATTEMPTS = 4;
+
+    // charge() results
+    private static final int LIMITED = 0;
+    private static final int ALLOWED = 1;
+    private static final int MOVED = 2;                     // the slot is no longer (or not yet) this client's
+
+    private final long[] table;                             // [key, time] per slot
+    private final int setMask;
+    private final long intervalNanos;                       // time one request costs
+    private final long toleranceNanos;                      // how far ahead of now a bucket may run
+    private final long origin = System.nanoTime() - 1;      // times are relative, so 0 never means "now"
+    private final LongAdder clients = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private int hand;                                       // sweeper position, in slots
+
+    RateLimiter(double ratePerSecond, double burst, int capacity) {
+        int slots = Integer.highestOneBit(Math.max(WAYS, Math.min(capacity, 1 << 26)) - 1) << 1;
+        this.table = new long[slots * 2];
+        this.setMask = slots / WAYS - 1;
+        this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.toleranceNanos = (long) (Math.max(1, burst) * intervalNanos);
+    }
+
+    /**
+     * Returns a limiter as configured by -Dlb.ratelimit.* with its sweeper running,
+     * or null if rate limiting is off.
+     */
+    static RateLimiter configured() {
+        double rate = Double.parseDouble(System.getProperty("lb.ratelimit.rate", "0"));
+        if (rate <= 0) {
+            return null;
+        }
+        double burst = Double.parseDouble(System.getProperty("lb.ratelimit.burst", String.valueOf(Math.max(1, rate))));
+        RateLimiter limiter = new RateLimiter(rate, burst, Integer.getInteger("lb.ratelimit.clients", 1 << 20));
+        Thread sweeper = new Thread(limiter::sweepLoop, "RateLimiter");
+        sweeper.setDaemon(true);
+        sweeper.start();
+        Log.info(String.format("Rate limiting: %.1f req/s per client IP, burst %.0f, %d client slots",
+                rate, Math.max(1, burst), limiter.table.length / 2));
+        return limiter;
+    }
+
+    /**
+     * Charges one request from packedIP arriving at nowNanos (System.nanoTime()).
+     * Returns false if the client is over its rate.
+     */
+    boolean tryAcquire(int packedIP, long nowNanos) {
+        long key = OCCUPIED | (packedIP & 0xFFFFFFFFL);
+        long now = nowNanos - origin;
+        int set = (Hashing.murmur3(packedIP, HASH_SEED) & setMask) * WAYS * 2;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int found = -1;
+            for (int i = set; i < set + WAYS * 2; i += 2) {
+                if ((long) SLOT.getAcquire(table, i) == key) {
+                    found = i;
+                    break;
+                }
+            }
+            if (found >= 0) {
+                int result = charge(found, key, now);
+                if (result != MOVED) {
+                    return result == ALLOWED;
+                }
+            } else if (claimVictim(set, key, now)) {
+                return true;
+            }
+            Thread.onSpinWait();                            // a slot changed under us: look again
+        }
+        return true;                                        // heavy contention on one set: let it through
+    }
+
+    /**
+     * Client IPs currently holding a slot.
+     */
+    long getClients() {
+        return clients.sum();
+    }
+
+    /**
+     * Clients pushed out of a full set to make room for a new one.
+     */
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Charges one request to the bucket at keySlot if it still belongs to key.
+     */
+    private int charge(int keySlot, long key, long now) {
+        while (true) {
+            long time = (long) SLOT.getAcquire(table, keySlot + 1);
+            // A claim swaps the key before it publishes the time, so this sees the new key
+            if (time == CLAIMING || (long) SLOT.getAcquire(table, keySlot) != key) {
+                return MOVED;
+            }
+            long next = Math.max(time, now) + intervalNanos;
+            if (next - now > toleranceNanos) {
+                return LIMITED;
+            }
+            if (SLOT.compareAndSet(table, keySlot + 1, time, next)) {
+                return ALLOWED;
+            }
+        }
+    }
+
+    /**
+     * Gives key a full bucket in a free slot of the set, or else in the slot whose bucket
+     * time is furthest in the past. Returns false if that slot changed after it was read.
+     */
+    private boolean claimVictim(int set, long key, long now) {
+        int victim = -1;
+        long seen = Long.MAX_VALUE;
+        for (int i = set; i < set + WAYS * 2; i += 2) {
+            long time = (long) SLOT.getAcquire(table, i + 1);
+            if (time == CLAIMING) {
+                continue;
+            }
+            if ((long) SLOT.getAcquire(table, i) == 0) {
+                victim = i;
+                seen = time;
+                break;
+            }
+            if (time < seen) {
+                victim = i;
+                seen = time;
+            }
+        }
+        if (victim < 0 || !SLOT.compareAndSet(table, victim + 1, seen, CLAIMING)) {
+            return false;
+        }
+        long previous;
+        do {
+            previous = (long) SLOT.getAcquire(table, victim);   // only the sweeper can still free it
+        } while (!SLOT.compareAndSet(table, victim, previous, key));
+        // A new bucket starts full, so its first request is always allowed
+        SLOT.setRelease(table, victim + 1, now + intervalNanos);
+        if (previous == 0) {
+            clients.increment();
+        } else {
+            evictions.increment();
+        }
+        return true;
+    }
+
+    private void sweepLoop() {
+        int slots = table.length / 2;
+        int chunk = Math.max(1, slots / SWEEPS_PER_PASS);
+        while (true) {
+            try {
+                Thread.sleep(SWEEP_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            sweep(chunk, System.nanoTime());
+        }
+    }
+
+    /**
+     * Advances the clock hand over count slots, freeing those whose bucket is full again
+     * at nowNanos.
+     */
+    void sweep(int count, long nowNanos) {
+        int slots = table.length / 2;
+        long now = nowNanos - origin;
+        for (int n = 0; n < count; n++) {
+            int i = hand * 2;
+            hand = (hand + 1) & (slots - 1);
+            long key = (long) SLOT.getAcquire(table, i);
+            long time = (long) SLOT.getAcquire(table, i + 1);
+            if (key != 0 && time != CLAIMING && time <= now
+                    && SLOT.compareAndSet(table, i, key, 0L)) {
+                clients.decrement();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes UserRequest frames over ByteBuffers.
+ * A frame is [int payloadLength][payload]; the payload layout depends on the format.
+ */
+public interface RequestCodec {
+
+    /**
+     * Format byte sent in the HELLO preamble for this codec.
+     */
+    byte format();
+
+    /**
+     * Writes one complete frame (length prefix + payload) at the buffer's position.
+     * Returns false, leaving the buffer untouched, if there is not enough room.
+     */
+    boolean encode(UserRequest request, ByteBuffer out) throws IOException;
+
+    /**
+     * Decodes a payload of the given length starting at the buffer's position
+     * and advances the position past it.
+     */
+    UserRequest decode(ByteBuffer in, int length) throws IOException;
+
+    /**
+     * Returns the codec for a negotiated format, or null if the format is unknown.
+     */
+    static RequestCodec forFormat(byte format) {
+        switch (format) {
+            case WireProtocol.FORMAT_BINARY:
+                return BinaryRequestCodec.INSTANCE;
+            case WireProtocol.FORMAT_SERIALIZED:
+                return SerializedRequestCodec.INSTANCE;
+            default:
+                return null;
+        }
+    }
+}
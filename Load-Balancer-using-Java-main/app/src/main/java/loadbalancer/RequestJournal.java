@@ -0,0 +1,218 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only journal of accepted requests, for replaying real traffic later
+ * (see JournalReplay and -Dlb.sim.journal).
+ *
+ * The journal is a directory of fixed-size segment files, each memory-mapped and
+ * pre-sized. A segment is a header followed by 16-byte records:
+ *
+ *   [int packedIP][int requestSize][long arrival nanos since journal start + 1]
+ *
+ * An ingress thread claims a record slot with one atomic increment and writes it with
+ * plain stores into the mapping, so recording costs no system call, lock or allocation.
+ * The timestamp is stored last with release semantics; 0 marks a slot that was never
+ * written (a reader skips it). The "Journal" thread maps the next segment before the
+ * current one fills up, so segment rolls stay off the ingress path; the page cache
+ * writes everything back, and close() forces it to disk.
+ *
+ * Enabled with -Dlb.journal=true; each run writes a new timestamped directory under
+ * -Dlb.journal.dir.
+ */
+public final class RequestJournal {
+
+    static final int MAGIC = 0x4C424A31;                   // "LBJ1"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 32;                   // magic, version, record length, pad, start epoch ms, records
+    static final int RECORD_LENGTH = 16;
+    static final String SEGMENT_SUFFIX = ".lbj";
+
+    private static final VarHandle STAMP = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final int SLOTS = 4;                    // mapped segments kept for late writers
+    private static final long ROLL_CHECK_MILLIS = 20;
+
+    /**
+     * One mapped segment file.
+     */
+    private static final class Segment {
+        final long index;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Segment(long index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path dir;
+    private final long recordsPerSegment;
+    private final long startNanos = System.nanoTime();
+    private final long startEpochMillis = System.currentTimeMillis();
+    private final AtomicLong nextRecord = new AtomicLong();
+    private final AtomicReferenceArray<Segment> segments = new AtomicReferenceArray<>(SLOTS);
+    private volatile boolean closed;
+
+    private RequestJournal(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.recordsPerSegment = Math.max(1, (segmentBytes - HEADER_LENGTH) / RECORD_LENGTH);
+    }
+
+    /**
+     * Opens a journal as configured by -Dlb.journal.*, or returns null if journaling is off.
+     */
+    static RequestJournal configured() throws IOException {
+        if (!Boolean.getBoolean("lb.journal")) {
+            return null;
+        }
+        Path base = Path.of(System.getProperty("lb.journal.dir", "journal"));
+        String name = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        return open(base.resolve(name), Long.getLong("lb.journal.segmentMb", 64L) * 1024 * 1024);
+    }
+
+    /**
+     * Creates a journal in a new directory, maps its first segment and starts the roll thread.
+     */
+    public static RequestJournal open(Path dir, long segmentBytes) throws IOException {
+        Files.createDirectories(dir);
+        RequestJournal journal = new RequestJournal(dir, segmentBytes);
+        journal.segment(0);
+        Thread roller = new Thread(journal::rollLoop, "Journal");
+        roller.setDaemon(true);
+        roller.start();
+        Log.info("Journal: recording to " + dir.toAbsolutePath());
+        return journal;
+    }
+
+    /**
+     * Appends one request. Safe to call from any number of threads; never blocks except
+     * when a burst outruns the roll thread and a segment has to be mapped in place.
+     */
+    public void record(int packedIP, int requestSize, long arrivalNanos) {
+        long n = nextRecord.getAndIncrement();
+        long index = n / recordsPerSegment;
+        Segment segment = segments.get((int) (index % SLOTS));
+        if (segment == null || segment.index != index) {
+            segment = segment(index);
+            if (segment == null) {
+                return;                                    // closed, or the disk refused the segment
+            }
+        }
+        int offset = HEADER_LENGTH + (int) (n % recordsPerSegment) * RECORD_LENGTH;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset, packedIP);
+        buffer.putInt(offset + 4, requestSize);
+        STAMP.setRelease(buffer, offset + 8, Math.max(0, arrivalNanos - startNanos) + 1);
+    }
+
+    /**
+     * Number of records claimed so far.
+     */
+    public long getRecorded() {
+        return nextRecord.get();
+    }
+
+    /**
+     * Stops recording and forces the mapped segments to disk.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < SLOTS; i++) {
+            Segment segment = segments.getAndSet(i, null);
+            if (segment != null) {
+                segment.buffer.force();
+                closeQuietly(segment.channel);
+            }
+        }
+        // Runs in a shutdown hook, where the Log writer thread may not get to print it
+        System.out.println("Journal: " + nextRecord.get() + " requests recorded in " + dir.toAbsolutePath());
+    }
+
+    /**
+     * Returns the mapped segment, mapping it if needed. Writers that fall behind by more
+     * than SLOTS segments get a fresh mapping of their old file instead of evicting a newer
+     * one. Its channel is closed at once, so stragglers do not leak file descriptors.
+     */
+    private synchronized Segment segment(long index) {
+        int slot = (int) (index % SLOTS);
+        Segment current = segments.get(slot);
+        if (current != null && current.index == index) {
+            return current;
+        }
+        if (closed) {
+            return null;
+        }
+        try {
+            Segment segment = map(index);
+            if (current == null || current.index < index) {
+                segments.set(slot, segment);               // the evicted mapping stays valid until unreachable
+                if (current != null) {
+                    closeQuietly(current.channel);
+                }
+            } else {
+                closeQuietly(segment.channel);             // straggler: the mapping outlives its channel
+            }
+            return segment;
+        } catch (IOException e) {
+            Log.error("Journal: cannot map segment " + index + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Segment map(long index) throws IOException {
+        Path file = dir.resolve(String.format("%06d%s", index, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_LENGTH + recordsPerSegment * RECORD_LENGTH);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_LENGTH);
+        buffer.putLong(16, startEpochMillis);
+        buffer.putLong(24, recordsPerSegment);
+        return new Segment(index, channel, buffer);
+    }
+
+    /**
+     * Maps the next segment once the current one is half full.
+     */
+    private void rollLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(ROLL_CHECK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long n = nextRecord.get();
+            if (n % recordsPerSegment >= recordsPerSegment / 2) {
+                segment(n / recordsPerSegment + 1);
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the mapping stays usable; nothing else to release
+        }
+    }
+}
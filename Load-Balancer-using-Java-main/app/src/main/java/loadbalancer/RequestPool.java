@@ -0,0 +1,52 @@
+package loadbalancer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Recycles UserRequest objects between ingress and the servers.
+ *
+ * The binary codec takes requests from here and servers hand them back once
+ * processed, so steady-state traffic allocates no request objects. The pool is a
+ * preallocated array queue (offer/poll never allocate); when it is empty a new
+ * request is created, when it is full a returned one is left to the GC.
+ * Enabled by -Dlb.pool.size=N, or by default in production mode (-Dlb.production=true).
+ */
+public final class RequestPool {
+
+    private static final int CAPACITY = Integer.getInteger("lb.pool.size",
+            Boolean.getBoolean("lb.production") ? 65536 : 0);
+    private static final BlockingQueue<UserRequest> pool =
+            CAPACITY > 0 ? new ArrayBlockingQueue<>(CAPACITY) : null;
+
+    private RequestPool() {
+    }
+
+    /**
+     * Returns true if requests are being recycled.
+     */
+    public static boolean isEnabled() {
+        return pool != null;
+    }
+
+    /**
+     * Returns a request holding the given values, reused from the pool when possible.
+     */
+    public static UserRequest acquire(int packedIP, int requestSize) {
+        UserRequest request = pool == null ? null : pool.poll();
+        if (request == null) {
+            return new UserRequest(packedIP, requestSize);
+        }
+        request.reset(packedIP, requestSize);
+        return request;
+    }
+
+    /**
+     * Returns a request to the pool. The caller must not touch it afterwards.
+     */
+    public static void release(UserRequest request) {
+        if (pool != null) {
+            pool.offer(request);
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package loadbalancer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded request queue with an admission policy, used for dispatcher shards and server queues.
+ *
+ * Storage is an array ring (ArrayDeque sized to the capacity up front, so it never grows)
+ * guarded by one lock, so overload can no longer grow the heap: once the queue is full the
+ * AdmissionPolicy decides between rejecting the new request and shedding the oldest one,
+ * and under CODEL requests that queued too long are shed when they reach the head.
+ * Consumers take from the head; idle peers may steal unpinned requests from the tail.
+ * Producers and consumers can also move whole batches under a single lock hold
+ * (offerAll, takeBatch, pollBatch); a batch is whatever is there, never waited for.
+ * Server queues may be split into one ring per request size class; their SizeScheduler
+ * then decides which class the next request comes from (see -Dlb.sched.policy). Each
+ * class ring starts at capacity / classes and grows on demand, so the queue costs no
+ * more memory than a single ring until one class needs more than its share; the total
+ * stays bounded by the capacity.
+ * Each queue has one consumer that blocks (its dispatcher worker or server thread). When
+ * the queue is empty it registers as the waiter, spins briefly and parks; the producer
+ * that adds the next request clears the waiter and unparks it. Unlike a Condition, which
+ * allocates a node per await, an idle consumer's wakeup allocates nothing.
+ * A draining owner closes the queue once it is empty, after which offers fail without
+ * counting as rejections.
+ * Rejected and shed requests are counted in Metrics. A rejected request still belongs to
+ * the caller; a shed one is passed to the owner's shed handler so it can undo its own bookkeeping.
+ */
+public class RequestQueue {
+
+    // Spins before parking: on a multi-core host the next request often comes within
+    // microseconds, and a park/unpark pair costs two system calls
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+
+    private final ArrayDeque<UserRequest>[] rings;          // one per size class, or a single ring
+    private final SizeScheduler scheduler;                  // null = plain FIFO
+    private final int capacity;
+    private int size;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Thread waiter;                         // consumer parked on an empty queue; set under lock
+    private boolean closed;
+
+    private final AdmissionPolicy policy;
+    private final CoDel codel;                              // null unless policy is CODEL
+    private final ToLongFunction<UserRequest> enqueuedAt;   // nanoTime the request joined this queue
+    private final Consumer<UserRequest> shedHandler;
+
+    /**
+     * Creates a FIFO queue holding at most capacity requests.
+     * enqueuedAt reads the timestamp CoDel measures queueing delay from.
+     */
+    public RequestQueue(int capacity, AdmissionPolicy policy,
+                        ToLongFunction<UserRequest> enqueuedAt, Consumer<UserRequest> shedHandler) {
+        this(capacity, policy, null, enqueuedAt, shedHandler);
+    }
+
+    /**
+     * Creates a queue holding at most capacity requests in total, with one ring per size
+     * class served in the order the scheduler picks (FIFO if scheduler is null).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RequestQueue(int capacity, AdmissionPolicy policy, SizeScheduler scheduler,
+                        ToLongFunction<UserRequest> enqueuedAt, Consumer<UserRequest> shedHandler) {
+        this.capacity = Math.max(1, capacity);
+        this.scheduler = scheduler;
+        this.rings = new ArrayDeque[scheduler == null ? 1 : SizeScheduler.classCount()];
+        for (int c = 0; c < rings.length; c++) {
+            rings[c] = new ArrayDeque<>(Math.max(1, this.capacity / rings.length));
+        }
+        this.policy = policy;
+        this.codel = policy == AdmissionPolicy.CODEL ? new CoDel() : null;
+        this.enqueuedAt = enqueuedAt;
+        this.shedHandler = shedHandler;
+    }
+
+    /**
+     * Queues a request. Returns false if it was rejected because the queue is full, or if
+     * the queue is closed.
+     */
+    public boolean offer(UserRequest request) {
+        UserRequest dropped = null;
+        Thread wake;
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (size == capacity) {
+                if (policy != AdmissionPolicy.DROP_OLDEST) {
+                    Metrics.recordRejected();
+                    return false;
+                }
+                dropped = removeOldest();
+            }
+            addLast(request);
+            wake = takeWaiter();
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(wake);
+        if (dropped != null) {
+            shed(dropped);
+        }
+        return true;
+    }
+
+    /**
+     * Queues batch[from .. from+count) in order under one lock, applying the admission
+     * policy to each request. Returns how many were queued; they are always a prefix of
+     * the batch, and the rest still belong to the caller (counted as rejected). Returns 0
+     * without counting anything if the queue is closed.
+     */
+    public int offerAll(UserRequest[] batch, int from, int count) {
+        UserRequest[] dropped = null;
+        int droppedCount = 0;
+        int accepted = 0;
+        Thread wake;
+        lock.lock();
+        try {
+            if (closed) {
+                return 0;
+            }
+            for (; accepted < count; accepted++) {
+                if (size == capacity) {
+                    if (policy != AdmissionPolicy.DROP_OLDEST) {
+                        Metrics.recordRejected(count - accepted);
+                        break;
+                    }
+                    if (dropped == null) {
+                        dropped = new UserRequest[count];
+                    }
+                    dropped[droppedCount++] = removeOldest();
+                }
+                addLast(batch[from + accepted]);
+            }
+            wake = accepted > 0 ? takeWaiter() : null;
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(wake);
+        for (int i = 0; i < droppedCount; i++) {
+            shed(dropped[i]);
+        }
+        return accepted;
+    }
+
+    /**
+     * Queues a request if there is room, bypassing the admission policy.
+     * Used to re-route requests that were already admitted once.
+     */
+    public boolean tryOffer(UserRequest request) {
+        Thread wake;
+        lock.lock();
+        try {
+            if (closed || size == capacity) {
+                return false;
+            }
+            addLast(request);
+            wake = takeWaiter();
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(wake);
+        return true;
+    }
+
+    /**
+     * Puts a request back at the head, even if that briefly exceeds the capacity by one.
+     */
+    public void pushBack(UserRequest request) {
+        Thread wake;
+        lock.lock();
+        try {
+            rings[classOf(request)].addFirst(request);
+            size++;
+            wake = takeWaiter();
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(wake);
+    }
+
+    /**
+     * Closes the queue if it is empty. Returns true only for the call that closed it.
+     */
+    public boolean closeIfEmpty() {
+        lock.lock();
+        try {
+            if (closed || size > 0) {
+                return false;
+            }
+            closed = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the next request that is still worth serving.
+     */
+    public UserRequest take() throws InterruptedException {
+        while (true) {
+            UserRequest request;
+            lock.lockInterruptibly();
+            try {
+                request = removeFirst();
+                setWaiter(request == null);
+            } finally {
+                lock.unlock();
+            }
+            if (request == null) {
+                await(false, 0);
+                continue;
+            }
+            if (!expired(request)) {
+                return request;
+            }
+            shed(request);
+        }
+    }
+
+    /**
+     * Waits up to the given time for the next request that is still worth serving.
+     * Returns null on timeout.
+     */
+    public UserRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            UserRequest request;
+            boolean timedOut;
+            lock.lockInterruptibly();
+            try {
+                request = removeFirst();
+                timedOut = request == null && deadline - System.nanoTime() <= 0;
+                setWaiter(request == null && !timedOut);
+            } finally {
+                lock.unlock();
+            }
+            if (timedOut) {
+                return null;
+            }
+            if (request == null) {
+                await(true, deadline);
+                continue;
+            }
+            if (!expired(request)) {
+                return request;
+            }
+            shed(request);
+        }
+    }
+
+    /**
+     * Waits until the queue is not empty, then moves up to max requests into out in one
+     * lock hold. Returns the number moved (at least 1). It never waits for more requests
+     * to arrive, so at low load batches are single requests and add no latency; under
+     * load they grow to whatever has queued up, up to max.
+     */
+    public int takeBatch(UserRequest[] out, int max) throws InterruptedException {
+        while (true) {
+            int n = 0;
+            lock.lockInterruptibly();
+            try {
+                while (n < max && size > 0) {
+                    out[n++] = removeFirst();
+                }
+                setWaiter(n == 0);
+            } finally {
+                lock.unlock();
+            }
+            if (n == 0) {
+                await(false, 0);
+                continue;
+            }
+            n = shedExpired(out, n);
+            if (n > 0) {
+                return n;
+            }
+        }
+    }
+
+    /**
+     * Moves up to max requests that are still worth serving into out without waiting.
+     * Returns the number moved (0 if the queue is empty).
+     */
+    public int pollBatch(UserRequest[] out, int max) {
+        while (true) {
+            int n = 0;
+            lock.lock();
+            try {
+                while (n < max && size > 0) {
+                    out[n++] = removeFirst();
+                }
+            } finally {
+                lock.unlock();
+            }
+            int kept = shedExpired(out, n);
+            if (kept > 0 || n == 0) {
+                return kept;
+            }
+        }
+    }
+
+    /**
+     * Returns the next request that is still worth serving, or null if there is none.
+     */
+    public UserRequest poll() {
+        while (true) {
+            UserRequest request;
+            lock.lock();
+            try {
+                request = removeFirst();
+            } finally {
+                lock.unlock();
+            }
+            if (request == null || !expired(request)) {
+                return request;
+            }
+            shed(request);
+        }
+    }
+
+    /**
+     * Removes the newest request for another server to run, unless it is pinned.
+     * With size classes the largest class is tried first, since it waits longest.
+     * Returns null if the queue is empty or every class tail is pinned.
+     */
+    public UserRequest stealLast() {
+        lock.lock();
+        try {
+            for (int c = rings.length - 1; c >= 0; c--) {
+                UserRequest tail = rings[c].peekLast();
+                if (tail != null && !tail.isPinned()) {
+                    size--;
+                    return rings[c].pollLast();
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public AdmissionPolicy getPolicy() {
+        return policy;
+    }
+
+    // ====== Waiting ======
+
+    /**
+     * Registers the calling thread as the waiter, or clears it (lock held). A queue has
+     * one blocking consumer; a second one waiting at the same time is a bug.
+     */
+    private void setWaiter(boolean waiting) {
+        Thread w = waiter;
+        if (!waiting) {
+            if (w != null) {
+                waiter = null;
+            }
+            return;
+        }
+        Thread me = Thread.currentThread();
+        if (w != null && w != me) {
+            throw new IllegalStateException("RequestQueue already has a waiting consumer: " + w.getName());
+        }
+        waiter = me;
+    }
+
+    /**
+     * Clears and returns the waiter for the caller to unpark after unlocking (lock held).
+     */
+    private Thread takeWaiter() {
+        Thread w = waiter;
+        if (w != null) {
+            waiter = null;
+        }
+        return w;
+    }
+
+    /**
+     * Spins, then parks until a producer cleared the waiter, the deadline passed (if
+     * timed) or the thread was interrupted. The caller re-checks the queue either way.
+     */
+    private void await(boolean timed, long deadlineNanos) throws InterruptedException {
+        Thread me = Thread.currentThread();
+        for (int i = 0; i < SPINS && waiter == me; i++) {
+            Thread.onSpinWait();
+        }
+        while (waiter == me) {
+            if (!timed) {
+                LockSupport.park(this);
+            } else {
+                long left = deadlineNanos - System.nanoTime();
+                if (left <= 0) {
+                    return;
+                }
+                LockSupport.parkNanos(this, left);
+            }
+            if (Thread.interrupted()) {
+                lock.lock();
+                try {
+                    setWaiter(false);
+                } finally {
+                    lock.unlock();
+                }
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    // ====== Ring access (lock held) ======
+
+    private int classOf(UserRequest request) {
+        return scheduler == null ? 0 : SizeScheduler.classOf(request.getRequestSize());
+    }
+
+    private void addLast(UserRequest request) {
+        rings[classOf(request)].addLast(request);
+        size++;
+    }
+
+    /**
+     * Removes the request the scheduler serves next, or null if the queue is empty.
+     */
+    private UserRequest removeFirst() {
+        if (size == 0) {
+            return null;
+        }
+        int c = scheduler == null ? 0 : scheduler.next(rings, enqueuedAt);
+        size--;
+        return rings[c].pollFirst();
+    }
+
+    /**
+     * Removes the request that has waited longest, whatever its class (drop-oldest).
+     */
+    private UserRequest removeOldest() {
+        int oldest = 0;
+        for (int c = 1; c < rings.length; c++) {
+            UserRequest head = rings[c].peekFirst();
+            UserRequest best = rings[oldest].peekFirst();
+            if (head != null && (best == null || enqueuedAt.applyAsLong(head) < enqueuedAt.applyAsLong(best))) {
+                oldest = c;
+            }
+        }
+        size--;
+        return rings[oldest].pollFirst();
+    }
+
+    private boolean expired(UserRequest request) {
+        if (codel == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        return codel.shouldShed(now - enqueuedAt.applyAsLong(request), now);
+    }
+
+    /**
+     * Sheds expired requests from out[0 .. n) and compacts the rest to the front.
+     */
+    private int shedExpired(UserRequest[] out, int n) {
+        if (codel == null) {
+            return n;
+        }
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            UserRequest request = out[i];
+            out[i] = null;
+            if (expired(request)) {
+                shed(request);
+            } else {
+                out[kept++] = request;
+            }
+        }
+        return kept;
+    }
+
+    private void shed(UserRequest request) {
+        Metrics.recordShed();
+        shedHandler.accept(request);
+    }
+}
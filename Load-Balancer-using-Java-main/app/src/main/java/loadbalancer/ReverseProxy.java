@@ -0,0 +1,399 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Proxy mode (-Dlb.mode=proxy): a TCP reverse proxy in front of real upstreams.
+ *
+ * Each accepted client connection is one request. The active BalancingStrategy picks a
+ * Server (an upstream host:port) for it, exactly as the dispatcher does for simulated
+ * requests, and the connection is then relayed byte for byte in both directions until
+ * both sides have closed. Half-closes are passed on, so request/response protocols that
+ * signal the end of a request with shutdownOutput() work unchanged.
+ *
+ * Relaying runs on a few selector threads. Each session has one direct buffer per
+ * direction: bytes go socket -> direct buffer -> socket with no copy through the heap,
+ * which is as close to splice() as plain NIO gets. A direction stops reading while its
+ * buffer is full, so a slow reader throttles its writer instead of growing memory.
+ * Upstream connections come warm from the UpstreamPool when one is ready. A failed
+ * connect is counted per server and reported to the HealthChecker, but never recorded as
+ * a completed request, so a dead upstream cannot look fast to the latency strategies.
+ */
+public class ReverseProxy {
+
+    // ====== Config ======
+    private static final int BUFFER_SIZE = Integer.getInteger("lb.proxy.bufferSize", 32 * 1024);
+    private static final int BUFFER_CACHE = 64;            // spare direct buffers kept per selector thread
+
+    private final int port;
+    private final Worker[] workers;
+    private ServerSocketChannel serverChannel;
+    private int nextWorker = 0;
+
+    /**
+     * Creates a proxy listening on the given port with the given number of selector threads.
+     */
+    public ReverseProxy(int port, int selectorThreads) {
+        this.port = port;
+        this.workers = new Worker[Math.max(1, selectorThreads)];
+    }
+
+    /**
+     * Parses "host:port,host:port" into upstream addresses.
+     */
+    public static List<InetSocketAddress> parseUpstreams(String spec) {
+        List<InetSocketAddress> upstreams = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String hostPort = part.trim();
+            if (hostPort.isEmpty()) {
+                continue;
+            }
+            int colon = hostPort.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Upstream must be host:port, got " + hostPort);
+            }
+            upstreams.add(new InetSocketAddress(hostPort.substring(0, colon),
+                    Integer.parseInt(hostPort.substring(colon + 1))));
+        }
+        return upstreams;
+    }
+
+    /**
+     * Binds the port and starts the acceptor, the selector threads and the upstream pool.
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i, Selector.open());
+            workers[i].start();
+        }
+        UpstreamPool.start();
+
+        new Thread(this::acceptLoop, "Proxy-Acceptor").start();
+    }
+
+    /**
+     * Stops accepting and closes every selector (and with it every relayed connection).
+     */
+    public void shutdown() {
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        for (Worker w : workers) {
+            w.shutdown();
+        }
+    }
+
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                Worker worker = workers[nextWorker];
+                nextWorker = (nextWorker + 1) % workers.length;
+                worker.register(channel);
+
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    Log.warn("Proxy accept error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * One client connection relayed to one upstream connection.
+     */
+    private static final class Session {
+        final SocketChannel client;
+        SocketChannel upstream;
+        SelectionKey clientKey;
+        SelectionKey upstreamKey;
+
+        final UserRequest request;
+        Server server;
+        long startNanos;
+
+        ByteBuffer toUpstream;     // filled from the client, drained to the upstream
+        ByteBuffer toClient;       // filled from the upstream, drained to the client
+        boolean connecting;
+        boolean relaying;          // the upstream connection is up; false if it never was
+        boolean clientEof;
+        boolean upstreamEof;
+        boolean upstreamOutputShut;
+        boolean clientOutputShut;
+        boolean closed;
+
+        Session(SocketChannel client, UserRequest request) {
+            this.client = client;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Selector thread. Owns its selector, its sessions and a small cache of direct buffers.
+     */
+    private static final class Worker extends Thread {
+        private final Selector selector;
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final ArrayDeque<ByteBuffer> spareBuffers = new ArrayDeque<>();
+        private volatile boolean running = true;
+
+        Worker(int index, Selector selector) {
+            super("Proxy-" + index);
+            this.selector = selector;
+        }
+
+        void register(SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            running = false;
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    acceptNewChannels();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Session s = (Session) key.attachment();
+                        if (!key.isValid() || s.closed) {
+                            continue;
+                        }
+                        try {
+                            if (key.isConnectable()) {
+                                finishConnect(s);
+                            } else {
+                                pump(s);
+                            }
+                        } catch (IOException e) {
+                            if (Log.isDebugEnabled()) {
+                                Log.debug("Proxy session to " + s.server.getUpstream() + " ended: " + e.getMessage());
+                            }
+                            close(s);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    Log.error(getName() + " stopped: " + e.getMessage());
+                }
+            }
+        }
+
+        private void acceptNewChannels() {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                open(channel);
+            }
+        }
+
+        /**
+         * Picks an upstream for a new client connection and connects (or reuses a warm connection).
+         */
+        private void open(SocketChannel client) {
+            UserRequest request = RequestPool.acquire(packedIP(client), 1);
+            Metrics.recordIngress(request);
+            if (!LoadBalancer.allowClient(request)) {
+                RequestPool.release(request);
+                UpstreamPool.closeQuietly(client);
+                return;
+            }
+            Session s = new Session(client, request);
+
+            if (!place(s)) {
+                RequestPool.release(request);
+                UpstreamPool.closeQuietly(client);
+                return;
+            }
+            try {
+                s.clientKey = client.register(selector, 0, s);
+                UpstreamPool pool = UpstreamPool.of(s.server.getUpstream());
+                s.upstream = pool.poll();
+                if (s.upstream == null) {
+                    s.upstream = pool.connectAsync();
+                    s.connecting = !s.upstream.isConnected();
+                }
+                s.upstreamKey = s.upstream.register(selector, 0, s);
+                s.toUpstream = buffer();
+                s.toClient = buffer();
+                if (s.connecting) {
+                    s.upstreamKey.interestOps(SelectionKey.OP_CONNECT);
+                } else {
+                    s.relaying = true;
+                    updateInterest(s);
+                }
+            } catch (IOException e) {
+                Log.warn("Proxy could not reach " + s.server.getUpstream() + ": " + e.getMessage());
+                HealthChecker.reportFailure(s.server, "connect: " + e.getMessage());
+                close(s);
+            }
+        }
+
+        /**
+         * Strategy selection, the same loop the dispatcher uses: a server that started
+         * draining between select() and openConnection() is skipped and the pick retried.
+         */
+        private static boolean place(Session s) {
+            while (true) {
+                List<Server> active = LoadBalancer.registry.active();
+                if (active.isEmpty()) {
+                    Log.warn("No upstreams available; closing client connection.");
+                    return false;
+                }
+                BalancingStrategy strategy = BalancingStrategies.current();
+                Server server = strategy.select(s.request, active);
+                Metrics.recordDispatch(s.request);
+                long start = server.openConnection(s.request);
+                if (start >= 0) {
+                    strategy.onRequestQueued(server);
+                    LoadBalancer.onDispatched(1);
+                    s.server = server;
+                    s.startNanos = start;
+                    return true;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        private void finishConnect(Session s) throws IOException {
+            try {
+                s.upstream.finishConnect();
+            } catch (IOException e) {
+                HealthChecker.reportFailure(s.server, "connect: " + e.getMessage());
+                throw e;
+            }
+            HealthChecker.reportSuccess(s.server);
+            s.connecting = false;
+            s.relaying = true;
+            updateInterest(s);
+        }
+
+        /**
+         * Moves whatever is ready in both directions, then re-arms interest.
+         */
+        private void pump(Session s) throws IOException {
+            if (!s.clientEof && s.toUpstream.hasRemaining() && s.client.read(s.toUpstream) < 0) {
+                s.clientEof = true;
+            }
+            if (!s.upstreamEof && s.toClient.hasRemaining() && s.upstream.read(s.toClient) < 0) {
+                s.upstreamEof = true;
+            }
+            flush(s.toUpstream, s.upstream);
+            flush(s.toClient, s.client);
+
+            // Pass half-closes on once everything before them was delivered
+            if (s.clientEof && s.toUpstream.position() == 0 && !s.upstreamOutputShut) {
+                s.upstream.shutdownOutput();
+                s.upstreamOutputShut = true;
+            }
+            if (s.upstreamEof && s.toClient.position() == 0 && !s.clientOutputShut) {
+                s.client.shutdownOutput();
+                s.clientOutputShut = true;
+            }
+            if (s.upstreamOutputShut && s.clientOutputShut) {
+                close(s);
+                return;
+            }
+            updateInterest(s);
+        }
+
+        private static void flush(ByteBuffer buf, SocketChannel to) throws IOException {
+            if (buf.position() == 0) {
+                return;
+            }
+            buf.flip();
+            to.write(buf);
+            buf.compact();
+        }
+
+        private static void updateInterest(Session s) {
+            s.clientKey.interestOps(
+                    (!s.clientEof && s.toUpstream.hasRemaining() ? SelectionKey.OP_READ : 0)
+                            | (s.toClient.position() > 0 ? SelectionKey.OP_WRITE : 0));
+            s.upstreamKey.interestOps(
+                    (!s.upstreamEof && s.toClient.hasRemaining() ? SelectionKey.OP_READ : 0)
+                            | (s.toUpstream.position() > 0 ? SelectionKey.OP_WRITE : 0));
+        }
+
+        private void close(Session s) {
+            if (s.closed) {
+                return;
+            }
+            s.closed = true;
+            if (s.clientKey != null) {
+                s.clientKey.cancel();
+            }
+            if (s.upstreamKey != null) {
+                s.upstreamKey.cancel();
+            }
+            UpstreamPool.closeQuietly(s.client);
+            UpstreamPool.closeQuietly(s.upstream);
+            recycle(s.toUpstream);
+            recycle(s.toClient);
+            if (s.relaying) {
+                s.server.connectionClosed(s.request, s.startNanos);
+            } else {
+                s.server.connectionAborted(s.request);
+            }
+        }
+
+        private ByteBuffer buffer() {
+            ByteBuffer buf = spareBuffers.pollFirst();
+            return buf != null ? buf : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        private void recycle(ByteBuffer buf) {
+            if (buf != null && spareBuffers.size() < BUFFER_CACHE) {
+                buf.clear();
+                spareBuffers.addFirst(buf);
+            }
+        }
+
+        private static int packedIP(SocketChannel client) {
+            try {
+                InetSocketAddress remote = (InetSocketAddress) client.getRemoteAddress();
+                byte[] a = remote.getAddress().getAddress();
+                if (a.length == 4) {
+                    return ((a[0] & 0xFF) << 24) | ((a[1] & 0xFF) << 16) | ((a[2] & 0xFF) << 8) | (a[3] & 0xFF);
+                }
+                return Arrays.hashCode(a);      // IPv6: any stable 32-bit key will do
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests are distributed evenly in a circular order.
+ * One shared atomic cursor keeps the order exact across all dispatcher workers.
+ */
+public class RoundRobinStrategy implements BalancingStrategy {
+
+    private final AtomicLong cursor = new AtomicLong();
+
+    @Override
+    public String getName() {
+        return "RoundRobin";
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        return servers.get((int) (cursor.getAndIncrement() % servers.size()));
+    }
+}
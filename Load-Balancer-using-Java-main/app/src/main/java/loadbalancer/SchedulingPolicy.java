@@ -0,0 +1,47 @@
+package loadbalancer;
+
+/**
+ * How a server picks the next request from its size classes (see SizeScheduler).
+ * Chosen with -Dlb.sched.policy=fifo|sjf|wfq.
+ */
+public enum SchedulingPolicy {
+
+    /** One queue, arrival order regardless of size. */
+    FIFO("fifo"),
+
+    /** Shortest expected job first: smallest class first, with aging so large requests are not starved. */
+    SJF("sjf"),
+
+    /** Weighted fair queuing: deficit round robin over the classes in expected service time. */
+    WFQ("wfq");
+
+    private final String propertyValue;
+
+    SchedulingPolicy(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    /**
+     * Policy chosen by -Dlb.sched.policy (default fifo).
+     */
+    public static SchedulingPolicy configured() {
+        return parse(System.getProperty("lb.sched.policy", "fifo"));
+    }
+
+    /**
+     * Looks a policy up by its property value.
+     */
+    public static SchedulingPolicy parse(String value) {
+        for (SchedulingPolicy policy : values()) {
+            if (policy.propertyValue.equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scheduling policy: " + value);
+    }
+
+    @Override
+    public String toString() {
+        return propertyValue;
+    }
+}
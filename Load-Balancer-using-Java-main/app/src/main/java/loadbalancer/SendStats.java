@@ -0,0 +1,92 @@
+package loadbalancer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Counters of an open-loop sender (LoadGenerator, JournalReplay) and its reports.
+ *
+ * Sender threads record flushes and send lag; connection reader threads count busy
+ * replies. The reporting thread prints the rates once per second and the totals at the end.
+ */
+final class SendStats {
+
+    private static final long REPORT_INTERVAL_MS = 1000;
+
+    private final String name;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder lagSumNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final LongAdder failedConnections = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+
+    SendStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Counter of busy replies, for LoadGenerator.readReplies.
+     */
+    LongAdder busy() {
+        return busy;
+    }
+
+    void recordFlush(int requests) {
+        sent.add(requests);
+        flushes.increment();
+    }
+
+    void recordLag(long lagNanos) {
+        lagSumNanos.add(lagNanos);
+        long max;
+        while (lagNanos > (max = maxLagNanos.get())) {
+            if (maxLagNanos.compareAndSet(max, lagNanos)) {
+                break;
+            }
+        }
+    }
+
+    void recordFailedConnection() {
+        failedConnections.increment();
+    }
+
+    /**
+     * Prints rates, batching and send lag once per second while running is true.
+     */
+    void reportWhile(BooleanSupplier running) throws InterruptedException {
+        long lastSent = 0;
+        long lastFlushes = 0;
+        long lastBusy = 0;
+        while (running.getAsBoolean()) {
+            Thread.sleep(REPORT_INTERVAL_MS);
+
+            long total = sent.sum();
+            long totalFlushes = flushes.sum();
+            long lagSum = lagSumNanos.sumThenReset();
+            long delta = total - lastSent;
+            long deltaFlushes = totalFlushes - lastFlushes;
+            long totalBusy = busy.sum();
+            System.out.printf("%s: %d req/s, %d busy/s, %.1f req/flush, send lag avg %.3f ms, max %.3f ms%n",
+                    name,
+                    delta,
+                    totalBusy - lastBusy,
+                    deltaFlushes == 0 ? 0.0 : delta / (double) deltaFlushes,
+                    delta == 0 ? 0.0 : lagSum / (double) delta / 1_000_000.0,
+                    maxLagNanos.getAndSet(0) / 1_000_000.0);
+            lastSent = total;
+            lastFlushes = totalFlushes;
+            lastBusy = totalBusy;
+        }
+    }
+
+    /**
+     * Prints the totals since startNanos.
+     */
+    void printSummary(long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        System.out.printf("%s: sent %d requests in %.1f s (%.0f req/s), %d busy, %d failed connections%n",
+                name, sent.sum(), seconds, sent.sum() / seconds, busy.sum(), failedConnections.sum());
+    }
+}
@@ -0,0 +1,50 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Java serialization format: each payload is a standalone ObjectOutputStream
+ * carrying one UserRequest. Kept for compatibility with older clients.
+ */
+public final class SerializedRequestCodec implements RequestCodec {
+
+    public static final SerializedRequestCodec INSTANCE = new SerializedRequestCodec();
+
+    private SerializedRequestCodec() {
+    }
+
+    @Override
+    public byte format() {
+        return WireProtocol.FORMAT_SERIALIZED;
+    }
+
+    @Override
+    public boolean encode(UserRequest request, ByteBuffer out) throws IOException {
+        byte[] payload = WireProtocol.serialize(request);
+        if (out.remaining() < WireProtocol.FRAME_HEADER_LENGTH + payload.length) {
+            return false;
+        }
+        out.putInt(payload.length);
+        out.put(payload);
+        return true;
+    }
+
+    @Override
+    public UserRequest decode(ByteBuffer in, int length) throws IOException {
+        try {
+            UserRequest request;
+            if (in.hasArray()) {
+                request = WireProtocol.deserialize(in.array(), in.arrayOffset() + in.position(), length);
+            } else {
+                byte[] copy = new byte[length];
+                in.duplicate().get(copy);
+                request = WireProtocol.deserialize(copy, 0, length);
+            }
+            in.position(in.position() + length);
+            return request;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
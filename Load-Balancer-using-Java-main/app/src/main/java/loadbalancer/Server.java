@@ -0,0 +1,594 @@
+package loadbalancer;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a server thread that processes UserRequest objects from its own queue.
+ *
+ * Two execution models (-Dlb.server.model):
+ * - thread (default): a dedicated platform thread handles one request at a time.
+ * - concurrent: no dedicated thread; up to getConcurrencyLimit() requests are in
+ *   flight at once on the shared ServiceExecutor (virtual threads where available),
+ *   so thousands of servers and tens of thousands of requests cost almost no threads.
+ *
+ * The queue is bounded (-Dlb.server.queueCapacity) and follows -Dlb.queue.policy;
+ * requests it sheds are released without being served. With -Dlb.sched.policy=sjf|wfq
+ * the queue keeps one ring per request size class (see SizeScheduler). With
+ * -Dlb.steal=true an idle server takes unpinned requests from the busiest peer
+ * (see WorkStealing).
+ *
+ * In proxy mode (-Dlb.mode=proxy) a server stands for a real upstream host:port instead:
+ * it has no thread and no work of its own, and each relayed client connection counts as
+ * one request from open to close (see ReverseProxy).
+ *
+ * Lifecycle: ACTIVE -> DRAINING (removed from the registry; hands its queue back to the
+ * dispatcher and finishes what it still holds) -> STOPPED (queue closed, nothing in flight).
+ *
+ * Each server tracks:
+ * - Current active + queued requests
+ * - Total processed requests
+ * - Real-time load percentage
+ */
+public class Server extends Thread {
+
+    /**
+     * Lifecycle state. Only ACTIVE servers accept new requests.
+     */
+    public enum Status {
+        ACTIVE, DRAINING, STOPPED
+    }
+
+    // ====== Server Identification ======
+    private final int id;
+    private final int weight;                       // Relative capacity for weighted strategies
+    private final InetSocketAddress upstream;       // Proxy mode only, otherwise null
+
+    // ====== Request Queue ======
+    private final RequestQueue serverQueue;
+
+    // ====== Thread Control ======
+    private volatile Status status = Status.ACTIVE;
+    private final AtomicInteger inFlight = new AtomicInteger();    // concurrent model and proxy mode
+    private volatile int concurrencyLimit = DEFAULT_CONCURRENCY;
+
+    // ====== Metrics ======
+    // currentConnections is bumped by dispatcher workers before the hand-off,
+    // so concurrent dispatchers see each other's choices immediately
+    private final AtomicInteger currentConnections = new AtomicInteger();  // Active + queued
+    private final LongAdder totalProcessedRequests = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();             // proxy mode
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final ServerHealth health = new ServerHealth();
+    private final PeakEwma serviceTimeEwma = new PeakEwma(EWMA_INITIAL_NANOS, EWMA_DECAY_NANOS);
+
+    // ====== Config ======
+    private static final int MAX_CAPACITY = 50;     // Max active+queued requests for 100% load
+    private static final double TIME_SCALE =                // Multiplier on simulated processing time
+            Double.parseDouble(System.getProperty("lb.server.timeScale", "1.0"));
+    private static final boolean CONCURRENT_MODEL =
+            "concurrent".equals(System.getProperty("lb.server.model", "thread"));
+    private static final int DEFAULT_CONCURRENCY = Integer.getInteger("lb.server.concurrency", 16);
+    private static final long IDLE_CHECK_MILLIS = 100;     // thread model: how soon an idle server notices a drain
+    private static final int QUEUE_CAPACITY = Integer.getInteger("lb.server.queueCapacity", 1024);
+    private static final int DEQUEUE_BATCH = 16;           // concurrent model: most requests started per queue lock
+    private static final int JITTER_MILLIS = 200;          // simulated service time jitter is uniform in [0, JITTER_MILLIS)
+    private static final AdmissionPolicy QUEUE_POLICY = AdmissionPolicy.configured();
+    private static final long EWMA_INITIAL_NANOS = Long.getLong("lb.ewma.initialMs", 100L) * 1_000_000L;
+    private static final long EWMA_DECAY_NANOS = Long.getLong("lb.ewma.decayMs", 10_000L) * 1_000_000L;
+
+    /**
+     * Creates a server thread with the given ID.
+     */
+    public Server(int id) {
+        this(id, 1);
+    }
+
+    /**
+     * Creates a server thread with the given ID and weight.
+     */
+    public Server(int id, int weight) {
+        this(id, weight, null);
+    }
+
+    /**
+     * Creates a server that forwards to a real upstream (proxy mode), or a simulated one if upstream is null.
+     */
+    public Server(int id, int weight, InetSocketAddress upstream) {
+        super("Server-" + id);
+        this.id = id;
+        this.weight = Math.max(1, weight);
+        this.upstream = upstream;
+        this.serverQueue = new RequestQueue(QUEUE_CAPACITY, QUEUE_POLICY, SizeScheduler.configured(),
+                UserRequest::getDispatchNanos, this::onShed);
+    }
+
+    /**
+     * Starts processing: the dedicated thread in the thread model, nothing to start otherwise.
+     */
+    public void startServing() {
+        if (!CONCURRENT_MODEL && upstream == null) {
+            start();
+        }
+    }
+
+    /**
+     * Returns true if this server runs requests concurrently on the shared executor.
+     */
+    public static boolean isConcurrentModel() {
+        return CONCURRENT_MODEL;
+    }
+
+    /**
+     * Returns the max requests a new server processes at once (1 in the thread model).
+     */
+    static int defaultConcurrencyLimit() {
+        return CONCURRENT_MODEL ? DEFAULT_CONCURRENCY : 1;
+    }
+
+    /**
+     * Returns the configured capacity of a server queue.
+     */
+    static int queueCapacity() {
+        return QUEUE_CAPACITY;
+    }
+
+    /**
+     * Adds a request to this server's queue.
+     * Returns false if the queue is full and rejected it, or if the server is no longer
+     * ACTIVE; the caller still owns the request then.
+     */
+    public boolean addRequest(UserRequest request) {
+        if (status != Status.ACTIVE) {
+            return false;
+        }
+        currentConnections.incrementAndGet(); // increment pending count
+        if (!serverQueue.offer(request)) {
+            currentConnections.decrementAndGet();
+            return false;
+        }
+        if (CONCURRENT_MODEL) {
+            fillSlots();
+        }
+        return true;
+    }
+
+    /**
+     * Counts a request the dispatcher has picked this server for before it is handed over,
+     * so load-aware strategies see the choice at once. addReserved() completes the hand-off.
+     */
+    void reserve() {
+        currentConnections.incrementAndGet();
+    }
+
+    /**
+     * Queues a batch of requests reserved with reserve() in one queue operation.
+     * Returns how many were queued (a prefix of the batch). The reservations of the rest
+     * are released and the caller still owns them: they were rejected if the server is
+     * still ACTIVE, and should be placed elsewhere otherwise.
+     */
+    int addReserved(UserRequest[] batch, int from, int count) {
+        int accepted = status == Status.ACTIVE ? serverQueue.offerAll(batch, from, count) : 0;
+        if (accepted < count) {
+            currentConnections.addAndGet(accepted - count);
+        }
+        if (accepted > 0 && CONCURRENT_MODEL) {
+            fillSlots();
+        }
+        return accepted;
+    }
+
+    /**
+     * Simulator: records a request reserved with reserve() that finished at virtual time
+     * nowNanos. The simulator keeps the queue itself; only the counters strategies and
+     * the auto-scaler read are updated here.
+     */
+    void simulatedCompletion(long serviceNanos, long nowNanos) {
+        totalProcessedRequests.increment();
+        serviceTimeEwma.observe(serviceNanos, nowNanos);
+        currentConnections.decrementAndGet();
+    }
+
+    /**
+     * Proxy mode: counts a relayed client connection as a started request.
+     * Returns its start timestamp, or -1 if the server is no longer ACTIVE.
+     */
+    long openConnection(UserRequest session) {
+        inFlight.incrementAndGet();
+        if (status != Status.ACTIVE) {
+            inFlight.decrementAndGet();   // lost a race with shutdown()
+            stopIfDrained();
+            return -1;
+        }
+        currentConnections.incrementAndGet();
+        return begin(session);
+    }
+
+    /**
+     * Proxy mode: records the end of a relayed connection opened by openConnection().
+     */
+    void connectionClosed(UserRequest session, long startNanos) {
+        complete(session, startNanos);
+        inFlight.decrementAndGet();
+        stopIfDrained();
+    }
+
+    /**
+     * Proxy mode: undoes openConnection() for a connection whose upstream connect failed.
+     * It counts as a connect failure, not a completed request, so no latency is recorded
+     * and a dead upstream does not look like the fastest one.
+     */
+    void connectionAborted(UserRequest session) {
+        connectFailures.increment();
+        onShed(session);
+        inFlight.decrementAndGet();
+        stopIfDrained();
+    }
+
+    /**
+     * Returns the upstream address in proxy mode, or null for a simulated server.
+     */
+    public InetSocketAddress getUpstream() {
+        return upstream;
+    }
+
+    /**
+     * Returns the max number of requests processed at once (concurrent model).
+     */
+    public int getConcurrencyLimit() {
+        return CONCURRENT_MODEL ? concurrencyLimit : 1;
+    }
+
+    /**
+     * Changes the max number of requests processed at once (concurrent model).
+     */
+    public void setConcurrencyLimit(int limit) {
+        concurrencyLimit = Math.max(1, limit);
+        if (CONCURRENT_MODEL) {
+            fillSlots();
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting in this server's queue (not yet started).
+     */
+    public int getQueuedRequests() {
+        return serverQueue.size();
+    }
+
+    /**
+     * Returns number of pending requests (active + queued).
+     */
+    public int getPendingRequests() {
+        return currentConnections.get();
+    }
+
+    /**
+     * Returns the lifecycle state.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the server ID.
+     */
+    public int getServerId() {
+        return id;
+    }
+
+    /**
+     * Returns the server weight (relative capacity).
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns total active connections (active + queued).
+     */
+    public int getCurrentConnections() {
+        return currentConnections.get();
+    }
+
+    /**
+     * Returns total number of requests processed by this server.
+     */
+    public long getTotalProcessedRequests() {
+        return totalProcessedRequests.sum();
+    }
+
+    /**
+     * Proxy mode: returns the number of relayed connections whose upstream connect failed.
+     */
+    public long getConnectFailures() {
+        return connectFailures.sum();
+    }
+
+    /**
+     * Returns this server's latency histograms.
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns this server's health state (see HealthChecker).
+     */
+    public ServerHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * Returns the peak-EWMA of observed service time in nanoseconds.
+     */
+    public double getServiceTimeEwmaNanos() {
+        return serviceTimeEwma.get();
+    }
+
+    /**
+     * Returns real-time load percentage (0–100%).
+     * Based on MAX_CAPACITY.
+     */
+    public double getLoadPercent() {
+        return Math.min(100.0, (currentConnections.get() / (double) MAX_CAPACITY) * 100);
+    }
+
+    /**
+     * Main server loop — takes requests from queue and processes them.
+     * Ends once the server is draining and its queue is empty.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                UserRequest req = nextRequest();
+                if (req == null) {
+                    if (status != Status.ACTIVE && serverQueue.closeIfEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                long startNanos = begin(req);
+
+                long processingTime = processingTimeMillis(req);
+                if (processingTime > 0) {
+                    Thread.sleep(processingTime);
+                }
+
+                complete(req, startNanos);
+            }
+        } catch (InterruptedException e) {
+            Log.warn("Server " + id + " interrupted with " + serverQueue.size() + " queued requests.");
+        }
+        stopped();
+    }
+
+    /**
+     * Thread model: own queue first, then (with stealing on) a peer's, then a short wait.
+     * Returns null when idle so the loop can notice a drain; a draining server never waits.
+     */
+    private UserRequest nextRequest() throws InterruptedException {
+        if (status != Status.ACTIVE) {
+            return serverQueue.poll();
+        }
+        UserRequest req = pollOrSteal();
+        if (req != null) {
+            return req;
+        }
+        long wait = WorkStealing.ENABLED ? WorkStealing.POLL_MILLIS : IDLE_CHECK_MILLIS;
+        return serverQueue.poll(wait, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Own queue first, then (with stealing on) a peer's; null if neither has work.
+     */
+    private UserRequest pollOrSteal() {
+        UserRequest req = serverQueue.poll();
+        return req != null || !WorkStealing.ENABLED || status != Status.ACTIVE ? req : steal();
+    }
+
+    /**
+     * Takes the newest unpinned request from the busiest peer, or returns null.
+     */
+    private UserRequest steal() {
+        Server victim = WorkStealing.findVictim(this);
+        UserRequest req = victim == null ? null : victim.surrenderTail();
+        if (req != null) {
+            currentConnections.incrementAndGet();
+            Metrics.recordSteal();
+            BalancingStrategies.current().onRequestStolen(victim, this);
+        }
+        return req;
+    }
+
+    /**
+     * Gives the newest queued request to an idle peer, unless it is pinned.
+     */
+    private UserRequest surrenderTail() {
+        UserRequest req = serverQueue.stealLast();
+        if (req != null) {
+            currentConnections.decrementAndGet();
+        }
+        return req;
+    }
+
+    /**
+     * Concurrent model: lets an idle server look for work at its peers (called by WorkStealing).
+     */
+    void stealIfIdle() {
+        if (CONCURRENT_MODEL && status == Status.ACTIVE && inFlight.get() < concurrencyLimit && serverQueue.isEmpty()) {
+            fillSlots();
+        }
+    }
+
+    /**
+     * Concurrent model: starts queued requests while fewer than the limit are in flight.
+     * Called after every enqueue and every completion, so no request is left behind.
+     * Free slots are claimed together and filled with one batched dequeue.
+     * With stealing on, spare capacity is filled from peers once the own queue is empty.
+     */
+    private void fillSlots() {
+        UserRequest[] batch = null;
+        while (status != Status.STOPPED) {
+            int active = inFlight.get();
+            int free = concurrencyLimit - active;
+            if (free <= 0 || (serverQueue.isEmpty() && !WorkStealing.ENABLED)) {
+                return;
+            }
+            int want = Math.min(free, DEQUEUE_BATCH);
+            if (!inFlight.compareAndSet(active, active + want)) {
+                continue;
+            }
+            if (batch == null) {
+                batch = new UserRequest[DEQUEUE_BATCH];
+            }
+            int n = serverQueue.pollBatch(batch, want);
+            if (n == 0 && WorkStealing.ENABLED && status == Status.ACTIVE) {
+                batch[0] = steal();
+                n = batch[0] != null ? 1 : 0;
+            }
+            if (n < want) {
+                inFlight.addAndGet(n - want);   // give back unused slots
+            }
+            if (n == 0) {
+                if (serverQueue.isEmpty()) {    // re-check in case a request just arrived
+                    return;
+                }
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                runAsync(batch[i]);
+                batch[i] = null;
+            }
+        }
+    }
+
+    private void runAsync(UserRequest req) {
+        long startNanos = begin(req);
+        ServiceExecutor.runAfter(processingTimeMillis(req), () -> {
+            complete(req, startNanos);
+            inFlight.decrementAndGet();
+            fillSlots();
+            stopIfDrained();
+        });
+    }
+
+    /**
+     * Simulated service time model: 50 ms base + size^1.5 ms + jitter ms.
+     */
+    static long serviceTimeMillis(int requestSize, int jitter) {
+        int baseTime = 50;
+        int variableTime = (int) Math.pow(requestSize, 1.5);
+        return baseTime + variableTime + jitter;
+    }
+
+    /**
+     * Mean simulated service time for a request size, used to rank requests by expected cost.
+     */
+    static long expectedServiceTimeMillis(int requestSize) {
+        return serviceTimeMillis(requestSize, JITTER_MILLIS / 2);
+    }
+
+    private static long processingTimeMillis(UserRequest req) {
+        int jitter = ThreadLocalRandom.current().nextInt(JITTER_MILLIS);
+        return (long) (serviceTimeMillis(req.getRequestSize(), jitter) * TIME_SCALE);
+    }
+
+    /**
+     * Marks a request as dequeued and returns the start timestamp.
+     */
+    private long begin(UserRequest req) {
+        long startNanos = System.nanoTime();
+        req.setDequeueNanos(startNanos);
+        if (Log.isDebugEnabled()) {
+            Log.debug("Server " + id + " processing: " + req);
+        }
+        return startNanos;
+    }
+
+    /**
+     * Records a finished request and hands it back to the pool.
+     */
+    private void complete(UserRequest req, long startNanos) {
+        long completedNanos = System.nanoTime();
+        long serviceNanos = completedNanos - startNanos;
+        totalProcessedRequests.increment();
+        metrics.recordCompletion(req, completedNanos);
+        Metrics.recordCompletion(req, completedNanos);
+        serviceTimeEwma.observe(serviceNanos);
+        currentConnections.decrementAndGet();
+        BalancingStrategies.current().onRequestCompleted(this, serviceNanos);
+        RequestPool.release(req);
+    }
+
+    /**
+     * Undoes the bookkeeping of a queued request the admission policy dropped.
+     */
+    private void onShed(UserRequest req) {
+        currentConnections.decrementAndGet();
+        BalancingStrategies.current().onRequestDropped(this);
+        RequestPool.release(req);
+    }
+
+    /**
+     * Stops the server gracefully; call after it was retired from the registry.
+     * It takes no new requests, hands queued ones back to the dispatcher (keeping the rest
+     * if the dispatcher has no room), finishes everything it still holds and then stops.
+     */
+    public void shutdown() {
+        if (status != Status.ACTIVE) {
+            return;
+        }
+        status = Status.DRAINING;
+
+        int handedBack = handBackQueue();
+        Log.info("Server " + id + " draining: " + handedBack + " requests re-dispatched, "
+                + getPendingRequests() + " left to finish.");
+
+        if (CONCURRENT_MODEL) {
+            fillSlots();
+        }
+        if (CONCURRENT_MODEL || upstream != null) {
+            stopIfDrained();
+        }
+    }
+
+    /**
+     * Re-dispatches queued requests to other servers, keeping the rest if the dispatcher
+     * has no room. Used when draining and when the health checker ejects this server.
+     * Returns the number handed back.
+     */
+    int handBackQueue() {
+        int handedBack = 0;
+        UserRequest req;
+        while ((req = serverQueue.poll()) != null) {
+            currentConnections.decrementAndGet();
+            if (!LoadBalancer.dispatcher.resubmit(req)) {
+                currentConnections.incrementAndGet();
+                serverQueue.pushBack(req);            // dispatcher full: finish it here instead
+                break;
+            }
+            handedBack++;
+        }
+        return handedBack;
+    }
+
+    /**
+     * Concurrent model and proxy mode: stops once draining, idle and empty.
+     */
+    private void stopIfDrained() {
+        if (status == Status.DRAINING && inFlight.get() == 0 && serverQueue.closeIfEmpty()) {
+            stopped();
+        }
+    }
+
+    private void stopped() {
+        status = Status.STOPPED;
+        LoadBalancer.registry.stopped(this);
+        Log.info("Server " + id + " stopped.");
+    }
+}
@@ -0,0 +1,68 @@
+package loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Health state of one server.
+ *
+ * Failure reports may come from any thread (proxy selector threads report failed
+ * upstream connections); everything else is written by the HealthChecker thread only.
+ * Whether a server is picked is decided by the registry snapshot, not by this object,
+ * so strategies never read it; the flags here are for monitoring.
+ */
+public class ServerHealth {
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean ejected;
+    private volatile String lastFailure = "";
+
+    // ====== HealthChecker thread only ======
+    int ejections;                  // drives the exponential back-off
+    long ejectedUntilNanos;
+    long readmittedNanos;
+    long completedAtReadmit;        // latency outlier checks need fresh samples after a readmit
+    long lastCompleted;
+    long lastProgressNanos = System.nanoTime();
+
+    /**
+     * Counts a failed probe or request and returns the number of failures in a row.
+     */
+    int recordFailure(String reason) {
+        lastFailure = reason;
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Ends a run of failures.
+     */
+    void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    void setEjected(boolean ejected) {
+        this.ejected = ejected;
+    }
+
+    /**
+     * True while the server is out of selection.
+     */
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    /**
+     * Failures since the last success.
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * Why the server last failed a check ("" if it never did).
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+}
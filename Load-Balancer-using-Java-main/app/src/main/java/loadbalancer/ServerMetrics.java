@@ -0,0 +1,41 @@
+package loadbalancer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-server latency distributions and counters.
+ * Queue wait = dispatch to dequeue; service time = dequeue to completion.
+ */
+public class ServerMetrics {
+
+    // 2 significant digits: 1% precision is plenty per server and keeps each recorder small
+    private final LatencyRecorder queueWait = new LatencyRecorder(2);
+    private final LatencyRecorder serviceTime = new LatencyRecorder(2);
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * Records one finished request using the timestamps carried by the request.
+     */
+    void recordCompletion(UserRequest request, long completedNanos) {
+        queueWait.record(request.getDequeueNanos() - request.getDispatchNanos());
+        serviceTime.record(completedNanos - request.getDequeueNanos());
+        completed.increment();
+    }
+
+    void roll() {
+        queueWait.roll();
+        serviceTime.roll();
+    }
+
+    public LatencyRecorder getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyRecorder getServiceTime() {
+        return serviceTime;
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+}
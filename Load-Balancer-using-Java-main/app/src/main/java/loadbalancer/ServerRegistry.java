@@ -0,0 +1,215 @@
+package loadbalancer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free registry of backend servers.
+ *
+ * Membership is an immutable snapshot (active servers, servers ejected by the health
+ * checker, and those still draining) that writers replace with a compare-and-set, so
+ * dispatcher workers read one consistent array per request without locks and can never
+ * index past its end. An ejection is published the same way, so the very next pick
+ * already skips the ejected server.
+ * Server ids come from a counter that only grows, so an id is never reused.
+ *
+ * Removing a server only takes it out of the active set: it keeps running as
+ * DRAINING until its queue is empty and then drops out of the registry on its own.
+ */
+public class ServerRegistry {
+
+    /**
+     * One published membership state. All lists are immutable.
+     */
+    private static final class Snapshot {
+        final List<Server> active;
+        final List<Server> ejected;
+        final List<Server> draining;
+        final List<Server> all;
+
+        Snapshot(List<Server> active, List<Server> ejected, List<Server> draining) {
+            this.active = List.copyOf(active);
+            this.ejected = List.copyOf(ejected);
+            this.draining = List.copyOf(draining);
+            List<Server> every = new ArrayList<>(active);
+            every.addAll(ejected);
+            every.addAll(draining);
+            this.all = List.copyOf(every);
+        }
+    }
+
+    private final AtomicReference<Snapshot> snapshot =
+            new AtomicReference<>(new Snapshot(List.of(), List.of(), List.of()));
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * Returns a fresh server id. Ids are never reused.
+     */
+    public int nextId() {
+        return nextId.getAndIncrement();
+    }
+
+    /**
+     * Servers that receive new requests. The returned list never changes.
+     */
+    public List<Server> active() {
+        return snapshot.get().active;
+    }
+
+    /**
+     * Servers that are up but temporarily out of selection because they failed health checks.
+     */
+    public List<Server> ejected() {
+        return snapshot.get().ejected;
+    }
+
+    /**
+     * Servers that were removed but are still finishing their queues.
+     */
+    public List<Server> draining() {
+        return snapshot.get().draining;
+    }
+
+    /**
+     * Active, ejected and draining servers (for metrics and monitoring).
+     */
+    public List<Server> all() {
+        return snapshot.get().all;
+    }
+
+    /**
+     * Number of active servers.
+     */
+    public int size() {
+        return active().size();
+    }
+
+    /**
+     * Publishes a new active server.
+     */
+    public void add(Server server) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            List<Server> active = new ArrayList<>(current.active);
+            active.add(server);
+            if (snapshot.compareAndSet(current, new Snapshot(active, current.ejected, current.draining))) {
+                notifyStrategy();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves a server from the active (or ejected) set to the draining set.
+     * Returns false if it was neither.
+     */
+    public boolean retire(Server server) {
+        return retire(server, false);
+    }
+
+    /**
+     * Like retire(), but refused (false) if the server is the last active one, so a
+     * removal racing another (auto-scaler, admin, UI) can never leave nothing to dispatch to.
+     */
+    public boolean retireUnlessLast(Server server) {
+        return retire(server, true);
+    }
+
+    private boolean retire(Server server, boolean keepOne) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (keepOne && current.active.size() <= 1 && current.active.contains(server)) {
+                return false;
+            }
+            List<Server> active = new ArrayList<>(current.active);
+            List<Server> ejected = new ArrayList<>(current.ejected);
+            if (!active.remove(server) && !ejected.remove(server)) {
+                return false;
+            }
+            List<Server> draining = new ArrayList<>(current.draining);
+            draining.add(server);
+            if (snapshot.compareAndSet(current, new Snapshot(active, ejected, draining))) {
+                notifyStrategy();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes an active server out of selection. Refused (false) if it is not active, if it
+     * is the last active server, or if more than maxPercent of the up servers would be ejected.
+     */
+    public boolean eject(Server server, int maxPercent) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            int up = current.active.size() + current.ejected.size();
+            if (current.active.size() <= 1 || (current.ejected.size() + 1) * 100 > up * maxPercent) {
+                return false;
+            }
+            List<Server> active = new ArrayList<>(current.active);
+            if (!active.remove(server)) {
+                return false;
+            }
+            List<Server> ejected = new ArrayList<>(current.ejected);
+            ejected.add(server);
+            if (snapshot.compareAndSet(current, new Snapshot(active, ejected, current.draining))) {
+                notifyStrategy();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Puts an ejected server back into selection. Returns false if it was not ejected.
+     */
+    public boolean readmit(Server server) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            List<Server> ejected = new ArrayList<>(current.ejected);
+            if (!ejected.remove(server)) {
+                return false;
+            }
+            List<Server> active = new ArrayList<>(current.active);
+            active.add(server);
+            if (snapshot.compareAndSet(current, new Snapshot(active, ejected, current.draining))) {
+                notifyStrategy();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Tells the strategy about the latest membership. Serialised so that of two racing
+     * writers the one that notifies last also passes the newest snapshot.
+     */
+    private synchronized void notifyStrategy() {
+        BalancingStrategies.serversChanged(active());
+    }
+
+    /**
+     * Makes the named strategy active, primed with the current membership. Holds the
+     * notifyStrategy() lock, so a change cannot land between reading the servers and the
+     * swap and leave the new strategy with a stale view.
+     */
+    public synchronized void activateStrategy(String name) {
+        BalancingStrategies.activate(name, active());
+    }
+
+    /**
+     * Forgets a server that finished draining.
+     */
+    void stopped(Server server) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            List<Server> draining = new ArrayList<>(current.draining);
+            if (!draining.remove(server)) {
+                return;
+            }
+            if (snapshot.compareAndSet(current, new Snapshot(current.active, current.ejected, draining))) {
+                return;
+            }
+        }
+    }
+}
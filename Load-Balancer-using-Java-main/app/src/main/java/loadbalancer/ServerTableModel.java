@@ -0,0 +1,176 @@
+package loadbalancer;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Table model for the health monitor, fed from MetricsSnapshots on the EDT.
+ *
+ * Each apply() compares the new rows with the ones on screen and fires an update only
+ * for the cells that changed; rows are rebuilt only when the server set itself changes.
+ * Every server also keeps a short history of throughput and p99 latency, sampled once
+ * per second, for the two sparkline columns. The latency one plots the queue-wait p99
+ * plus the service-time p99, which is not the p99 of wait + service.
+ */
+final class ServerTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int COL_STATUS = 4;
+    static final int COL_THROUGHPUT = 7;
+    static final int COL_LATENCY = 8;
+
+    private static final String[] COLUMNS = {"Server ID", "Connections", "Load (ms)", "Load %", "Status",
+            "Wait p99 (ms)", "Service p99 (ms)", "Throughput", "Wait p99 + Service p99"};
+
+    // ====== History config: -Dlb.ui.historyPoints=N samples, one per second ======
+    private static final int HISTORY_POINTS = Math.max(2, Integer.getInteger("lb.ui.historyPoints", 60));
+    private static final long HISTORY_STEP_MS = 1000;
+
+    private int[] ids = new int[0];
+    private Object[][] rows = new Object[0][];
+    private final Map<Integer, History> histories = new HashMap<>();
+    private long lastHistoryMillis;
+
+    @Override
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return rows[row][column];
+    }
+
+    /**
+     * Shows the given snapshot. EDT only.
+     */
+    void apply(MetricsSnapshot snapshot) {
+        long now = snapshot.timestampMillis;
+        boolean sample = now - lastHistoryMillis >= HISTORY_STEP_MS;
+        if (sample) {
+            lastHistoryMillis = now;
+        }
+
+        List<MetricsSnapshot.ServerStats> servers = snapshot.servers;
+        int[] nextIds = new int[servers.size()];
+        Object[][] next = new Object[servers.size()][];
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < servers.size(); i++) {
+            MetricsSnapshot.ServerStats s = servers.get(i);
+            History h = histories.computeIfAbsent(s.id, id -> new History(s.processed, now));
+            if (sample) {
+                h.sample(s, now);
+            }
+            nextIds[i] = s.id;
+            next[i] = row(s, h);
+            seen.add(s.id);
+        }
+        histories.keySet().retainAll(seen);
+
+        if (!Arrays.equals(ids, nextIds)) {
+            ids = nextIds;
+            rows = next;
+            fireTableDataChanged();
+            return;
+        }
+        for (int r = 0; r < next.length; r++) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (!Objects.equals(rows[r][c], next[r][c])) {
+                    rows[r][c] = next[r][c];
+                    fireTableCellUpdated(r, c);
+                }
+            }
+        }
+    }
+
+    private static Object[] row(MetricsSnapshot.ServerStats s, History h) {
+        double loadPercent = s.loadPercent;
+        long simulatedLoadMs = (long) ((loadPercent / 100.0) * 5000);
+
+        String status;
+        if (s.status == Server.Status.STOPPED) {
+            status = "Stopped";
+        } else if (s.status == Server.Status.DRAINING) {
+            status = "Draining";
+        } else if (s.ejected) {
+            status = "Ejected";
+        } else if (loadPercent < 50) {
+            status = "Good";
+        } else if (loadPercent < 80) {
+            status = "Neutral";
+        } else {
+            status = "Bad";
+        }
+
+        return new Object[]{
+                s.id,
+                s.pending,
+                simulatedLoadMs,
+                String.format("%.1f", loadPercent) + "%",
+                status,
+                s.queueWait.getP99() / 1_000_000,
+                s.serviceTime.getP99() / 1_000_000,
+                h.throughput,
+                h.latency
+        };
+    }
+
+    /**
+     * Fixed-size rings of per-second samples for one server.
+     */
+    private static final class History {
+        private final double[] throughputRing = new double[HISTORY_POINTS];
+        private final double[] latencyRing = new double[HISTORY_POINTS];
+        private int count;
+        private int head;
+        private long lastProcessed;
+        private long lastMillis;
+
+        // Published to the table; replaced (not mutated) on every sample
+        Sparkline throughput = Sparkline.EMPTY;
+        Sparkline latency = Sparkline.EMPTY;
+
+        History(long processed, long now) {
+            this.lastProcessed = processed;
+            this.lastMillis = now;
+        }
+
+        void sample(MetricsSnapshot.ServerStats s, long now) {
+            long elapsed = Math.max(1, now - lastMillis);
+            throughputRing[head] = (s.processed - lastProcessed) * 1000.0 / elapsed;
+            latencyRing[head] = (s.queueWait.getP99() + s.serviceTime.getP99()) / 1e6;
+            head = (head + 1) % HISTORY_POINTS;
+            count = Math.min(count + 1, HISTORY_POINTS);
+            lastProcessed = s.processed;
+            lastMillis = now;
+            throughput = new Sparkline(ordered(throughputRing));
+            latency = new Sparkline(ordered(latencyRing));
+        }
+
+        private double[] ordered(double[] ring) {
+            double[] out = new double[count];
+            int start = (head - count + HISTORY_POINTS) % HISTORY_POINTS;
+            for (int i = 0; i < count; i++) {
+                out[i] = ring[(start + i) % HISTORY_POINTS];
+            }
+            return out;
+        }
+    }
+}
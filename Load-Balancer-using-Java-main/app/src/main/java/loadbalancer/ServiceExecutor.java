@@ -0,0 +1,75 @@
+package loadbalancer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs simulated request processing for servers in concurrent mode.
+ *
+ * On Java 21+ every request runs on its own virtual thread and simply sleeps,
+ * which costs next to nothing per in-flight request. On older runtimes the same
+ * effect comes from scheduling the completion on a small shared timer pool instead
+ * of sleeping. Either way thousands of servers share a handful of carrier threads.
+ */
+final class ServiceExecutor {
+
+    private static final ExecutorService VIRTUAL = createVirtualThreadExecutor();
+    private static final ScheduledExecutorService TIMER = VIRTUAL != null ? null
+            : Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), daemonThreads());
+
+    private ServiceExecutor() {
+    }
+
+    /**
+     * Runs the completion after the given simulated processing time.
+     */
+    static void runAfter(long delayMillis, Runnable completion) {
+        if (VIRTUAL != null) {
+            VIRTUAL.execute(() -> {
+                try {
+                    if (delayMillis > 0) {
+                        Thread.sleep(delayMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                completion.run();
+            });
+        } else if (delayMillis > 0) {
+            TIMER.schedule(completion, delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            TIMER.execute(completion);
+        }
+    }
+
+    /**
+     * Describes the execution backend in use.
+     */
+    static String describe() {
+        return VIRTUAL != null ? "virtual threads" : "shared timer pool";
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor() so the code still runs on Java 17.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "Server-Timer-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,551 @@
+package loadbalancer;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Deterministic discrete-event simulator for capacity planning.
+ *
+ * Runs the real balancing strategies and the AutoScaler's decision logic against
+ * simulated servers on a virtual clock. Completions wait in a priority queue; arrivals,
+ * auto-scaler ticks and timeline samples are scheduled next to it, and the loop always
+ * jumps to the earliest event, so hours of traffic across hundreds of servers take
+ * seconds and no thread ever sleeps. Service times follow Server.serviceTimeMillis
+ * (50 + size^1.5 + jitter ms, unscaled by lb.server.timeScale).
+ *
+ * Arrivals are Poisson, with the rate shaped over the run by a load profile, or are read
+ * from a recorded RequestJournal (-Dlb.sim.journal) with their captured IPs, sizes and
+ * gaps. Generated sizes, IPs and gaps, service jitter and strategy sampling come from
+ * generators seeded with -Dlb.sim.seed, so the same settings reproduce the same run.
+ *
+ * Each simulated server has getConcurrencyLimit() service slots (one in the thread
+ * model) and a bounded FIFO queue of lb.server.queueCapacity; a full queue rejects.
+ * Removed servers finish their own queues, then stop. One scenario runs per algorithm
+ * in -Dlb.sim.algorithms, each printing a timeline and a summary.
+ *
+ * Run with: Main -Dlb.sim=true
+ */
+public class Simulator {
+
+    /**
+     * Shape of the arrival rate over a run; every profile averages to the base rate.
+     */
+    enum Profile {
+        CONSTANT, RAMP, SPIKE, WAVE;
+
+        /**
+         * Rate multiplier at a fraction of the run (0..1).
+         */
+        double factor(double f) {
+            switch (this) {
+                case RAMP:
+                    return 0.25 + 1.5 * f;                            // 0.25x -> 1.75x
+                case SPIKE:
+                    return f >= 0.45 && f < 0.55 ? 3.0 : 7.0 / 9.0;   // 3x for the middle tenth
+                case WAVE:
+                    return 1 + 0.5 * Math.sin(4 * Math.PI * f);       // two cycles, 0.5x .. 1.5x
+                default:
+                    return 1.0;
+            }
+        }
+    }
+
+    /**
+     * A simulated server: the real Server object the strategies see, plus its queue and slots.
+     */
+    private static final class Node {
+        final Server server;
+        final int slots;
+        final long addedAt;
+        final ArrayDeque<UserRequest> queue = new ArrayDeque<>();
+        int busy;
+        long busyNanos;                 // slot time spent serving
+        long stoppedAt = -1;
+        boolean draining;
+
+        Node(Server server, long addedAt) {
+            this.server = server;
+            this.slots = server.getConcurrencyLimit();
+            this.addedAt = addedAt;
+        }
+    }
+
+    /**
+     * A request in service, due to finish at time.
+     */
+    private static final class Completion implements Comparable<Completion> {
+        final long time;
+        final long seq;                 // tie-break so equal times pop in a fixed order
+        final Node node;
+        final UserRequest request;
+        final long serviceNanos;
+
+        Completion(long time, long seq, Node node, UserRequest request, long serviceNanos) {
+            this.time = time;
+            this.seq = seq;
+            this.node = node;
+            this.request = request;
+            this.serviceNanos = serviceNanos;
+        }
+
+        @Override
+        public int compareTo(Completion o) {
+            return time != o.time ? Long.compare(time, o.time) : Long.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * One scenario's results, for the comparison table.
+     */
+    private static final class Result {
+        final String algorithm;
+        final LatencyStats latency;
+        final double utilization;
+        final long rejected;
+        final int finalServers;
+        final int peakServers;
+
+        Result(String algorithm, LatencyStats latency, double utilization, long rejected, int finalServers, int peakServers) {
+            this.algorithm = algorithm;
+            this.latency = latency;
+            this.utilization = utilization;
+            this.rejected = rejected;
+            this.finalServers = finalServers;
+            this.peakServers = peakServers;
+        }
+    }
+
+    // ====== Config ======
+    private static final int MAX_REQUEST_SIZE = 100;   // sizes are uniform in 1..100, like UserRequest()
+    private static final int JITTER_MILLIS = 200;
+
+    private final List<String> algorithms;
+    private final int initialServers;
+    private final long requests;
+    private final double rate;                  // mean arrivals per virtual second
+    private final Profile profile;
+    private final boolean autoScale;
+    private final long seed;
+    private final int timelinePoints;
+    private final Path journal;                 // null = Poisson arrivals
+
+    // ====== Scenario state ======
+    private final PriorityQueue<Completion> completions = new PriorityQueue<>();
+    private final List<Node> nodes = new ArrayList<>();        // index = server id - 1
+    private final List<Server> active = new ArrayList<>();
+    private List<Server> activeView = List.of();                // immutable copy handed to the strategy
+    private BalancingStrategy strategy;
+    private AutoScaler scaler;
+    private Random arrivals;
+    private Random jitter;
+    private JournalReader replay;
+    private long replayOrigin;                  // arrival time of the journal's first record
+    private int pendingIP;                      // the request scheduleArrival() drew
+    private int pendingSize;
+    private long now;
+    private long seq;
+    private long received;
+    private long rejected;
+    private long events;
+    private int added;
+    private int removed;
+    private final Histogram endToEnd = new Histogram(3);
+    private final Histogram queueWait = new Histogram(3);
+    private final Histogram sampleEndToEnd = new Histogram(3);  // since the last timeline sample
+    private final Histogram tickQueueWait = new Histogram(3);   // since the last auto-scaler tick
+    private long tickServiceNanos;                                // likewise, for the mean service time
+    private long tickCompleted;
+
+    public Simulator(List<String> algorithms, int initialServers, long requests, double rate,
+                     Profile profile, boolean autoScale, long seed, int timelinePoints, Path journal) {
+        this.algorithms = algorithms;
+        this.initialServers = Math.max(1, initialServers);
+        this.requests = requests;
+        this.rate = rate;
+        this.profile = profile;
+        this.autoScale = autoScale;
+        this.seed = seed;
+        this.timelinePoints = Math.max(1, timelinePoints);
+        this.journal = journal;
+    }
+
+    /**
+     * Builds a simulator from -Dlb.sim.* system properties. Without lb.sim.rate the rate
+     * is lb.sim.load (default 0.7) of the initial servers' capacity. With lb.sim.journal
+     * the request count and mean rate come from the journal (up to lb.sim.requests).
+     */
+    public static Simulator fromSystemProperties() throws IOException {
+        int servers = Integer.getInteger("lb.sim.servers", 100);
+        long requests = Long.getLong("lb.sim.requests", 1_000_000L);
+        double rate = Double.parseDouble(System.getProperty("lb.sim.rate", "0"));
+        String journalDir = System.getProperty("lb.sim.journal");
+        Path journal = journalDir == null ? null : Path.of(journalDir);
+        if (journal != null) {
+            long count = 0;
+            long first = 0;
+            long last = 0;
+            try (JournalReader reader = new JournalReader(journal)) {
+                while (count < requests && reader.next()) {
+                    if (count++ == 0) {
+                        first = reader.getArrivalNanos();
+                    }
+                    last = Math.max(last, reader.getArrivalNanos());
+                }
+            }
+            requests = count;
+            rate = count / Math.max(1e-9, (last - first) / 1e9);
+        } else if (rate <= 0) {
+            double load = Double.parseDouble(System.getProperty("lb.sim.load", "0.7"));
+            rate = load * servers * Server.defaultConcurrencyLimit() / (meanServiceMillis() / 1000.0);
+        }
+        return new Simulator(
+                List.of(System.getProperty("lb.sim.algorithms", "RoundRobin,LeastConnections,P2C,PeakEWMA").split(",")),
+                servers,
+                requests,
+                rate,
+                Profile.valueOf(System.getProperty("lb.sim.profile", "constant").trim().toUpperCase(Locale.ROOT)),
+                Boolean.getBoolean("lb.sim.autoscale"),
+                Long.getLong("lb.sim.seed", 42L),
+                Integer.getInteger("lb.sim.timelinePoints", 20),
+                journal);
+    }
+
+    /**
+     * Runs every scenario and prints a comparison table.
+     */
+    public void run() {
+        System.out.printf("Simulator: %d requests at %.0f req/s (%s), %d servers, %s model, auto-scaling %s, seed %d%n",
+                requests, rate, journal != null ? "journal " + journal : profile.name().toLowerCase(Locale.ROOT), initialServers,
+                Server.isConcurrentModel() ? "concurrent" : "thread", autoScale ? "on" : "off", seed);
+        List<Result> results = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            results.add(runScenario(algorithm.trim()));
+        }
+        System.out.println();
+        System.out.printf("%-20s %10s %10s %10s %10s %7s %9s %8s%n",
+                "algorithm", "mean ms", "p50 ms", "p99 ms", "p999 ms", "util", "rejected", "servers");
+        for (Result r : results) {
+            System.out.printf("%-20s %10.1f %10.1f %10.1f %10.1f %6.1f%% %9d %4d/%-3d%n",
+                    r.algorithm, r.latency.getMean() / 1e6, r.latency.getP50() / 1e6, r.latency.getP99() / 1e6,
+                    r.latency.getP999() / 1e6, r.utilization * 100, r.rejected, r.finalServers, r.peakServers);
+        }
+    }
+
+    private Result runScenario(String algorithm) {
+        reset(algorithm);
+        long wallStart = System.nanoTime();
+        long durationNanos = (long) (requests / rate * 1e9);
+        long sampleNanos = Math.max(1, durationNanos / timelinePoints);
+        long tickNanos = AutoScaler.INTERVAL_MS * 1_000_000L;
+
+        System.out.println();
+        System.out.println("== " + algorithm);
+        System.out.printf("%8s %8s %10s %8s %10s %8s %9s%n", "time s", "servers", "rate/s", "util", "p99 ms", "queued", "rejected");
+
+        long nextArrival = scheduleArrival();
+        long nextSample = sampleNanos;
+        long nextTick = tickNanos;
+        long lastSample = 0;
+        long busyAtSample = 0;
+        long receivedAtSample = 0;
+        long rejectedAtSample = 0;
+        int peakServers = active.size();
+
+        while (nextArrival != Long.MAX_VALUE || !completions.isEmpty()) {
+            long nextCompletion = completions.isEmpty() ? Long.MAX_VALUE : completions.peek().time;
+            long next = Math.min(Math.min(nextCompletion, nextArrival), Math.min(nextSample, nextTick));
+            now = next;
+            events++;
+            if (next == nextCompletion) {
+                complete(completions.poll());
+            } else if (next == nextArrival) {
+                arrive();
+                nextArrival = scheduleArrival();
+            } else if (next == nextTick) {
+                tick();
+                peakServers = Math.max(peakServers, active.size());
+                nextTick += tickNanos;
+            } else {
+                long busy = busyNanos();
+                int slots = 0;
+                int queued = 0;
+                for (Server s : active) {
+                    Node node = node(s);
+                    slots += node.slots;
+                    queued += node.queue.size();
+                }
+                double interval = now - lastSample;
+                System.out.printf("%8.0f %8d %10.0f %7.1f%% %10.1f %8d %9d%n",
+                        now / 1e9, active.size(), (received - receivedAtSample) * 1e9 / interval,
+                        100.0 * (busy - busyAtSample) / (interval * Math.max(1, slots)),
+                        sampleEndToEnd.getValueAtPercentile(99) / 1e6, queued, rejected - rejectedAtSample);
+                sampleEndToEnd.reset();
+                lastSample = now;
+                busyAtSample = busy;
+                receivedAtSample = received;
+                rejectedAtSample = rejected;
+                nextSample += sampleNanos;
+            }
+        }
+
+        double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+        LatencyStats latency = LatencyStats.of(endToEnd);
+        LatencyStats wait = LatencyStats.of(queueWait);
+        double minUtil = Double.MAX_VALUE;
+        double maxUtil = 0;
+        double busyTotal = 0;
+        double slotTimeTotal = 0;
+        for (Node node : nodes) {
+            long end = node.stoppedAt >= 0 ? node.stoppedAt : now;
+            double slotTime = (double) (end - node.addedAt) * node.slots;
+            if (slotTime <= 0) {
+                continue;
+            }
+            double util = node.busyNanos / slotTime;
+            minUtil = Math.min(minUtil, util);
+            maxUtil = Math.max(maxUtil, util);
+            busyTotal += node.busyNanos;
+            slotTimeTotal += slotTime;
+        }
+        double utilization = slotTimeTotal > 0 ? busyTotal / slotTimeTotal : 0;
+
+        System.out.printf("%d requests, %.0f s simulated in %.2f s (%.0f events/s); servers %d -> %d (peak %d, +%d/-%d)%n",
+                received, now / 1e9, wallSeconds, events / wallSeconds, initialServers, active.size(),
+                peakServers, added, removed);
+        System.out.printf("  end-to-end  mean %.1f ms  p50 %.1f  p99 %.1f  p999 %.1f  max %.1f%n",
+                latency.getMean() / 1e6, latency.getP50() / 1e6, latency.getP99() / 1e6,
+                latency.getP999() / 1e6, latency.getMax() / 1e6);
+        System.out.printf("  queue wait  mean %.1f ms  p50 %.1f  p99 %.1f  p999 %.1f  max %.1f%n",
+                wait.getMean() / 1e6, wait.getP50() / 1e6, wait.getP99() / 1e6, wait.getP999() / 1e6, wait.getMax() / 1e6);
+        System.out.printf("  utilisation %.1f%% (per server %.1f%% .. %.1f%%), rejected %d%n",
+                utilization * 100, (minUtil == Double.MAX_VALUE ? 0 : minUtil) * 100, maxUtil * 100, rejected);
+
+        BalancingStrategies.seed(null);
+        if (replay != null) {
+            replay.close();
+        }
+        return new Result(algorithm, latency, utilization, rejected, active.size(), peakServers);
+    }
+
+    private void reset(String algorithm) {
+        completions.clear();
+        nodes.clear();
+        active.clear();
+        endToEnd.reset();
+        queueWait.reset();
+        sampleEndToEnd.reset();
+        tickQueueWait.reset();
+        tickServiceNanos = 0;
+        tickCompleted = 0;
+        now = 0;
+        seq = 0;
+        received = 0;
+        rejected = 0;
+        events = 0;
+        added = 0;
+        removed = 0;
+        arrivals = new Random(seed);
+        jitter = new Random(seed + 1);
+        BalancingStrategies.seed(new Random(seed + 2));
+        replay = null;
+        if (journal != null) {
+            try {
+                replay = new JournalReader(journal);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            replayOrigin = -1;
+        }
+        strategy = BalancingStrategies.create(algorithm);
+        for (int i = 0; i < initialServers; i++) {
+            addNode();
+        }
+        added = 0;
+        serversChanged();
+        scaler = new AutoScaler(() -> { });
+        scaler.reset(0, 0);
+    }
+
+    // ====== Events ======
+
+    private void arrive() {
+        UserRequest request = new UserRequest(pendingIP, pendingSize);
+        request.setIngressNanos(now);
+        received++;
+        Server server = strategy.select(request, activeView);
+        request.setDispatchNanos(now);
+        request.setPinned(strategy.isSticky());
+        Node node = node(server);
+        if (node.busy >= node.slots && node.queue.size() >= Server.queueCapacity()) {
+            rejected++;
+            return;
+        }
+        server.reserve();
+        strategy.onRequestQueued(server);
+        if (node.busy < node.slots) {
+            start(node, request);
+        } else {
+            node.queue.addLast(request);
+        }
+    }
+
+    private void start(Node node, UserRequest request) {
+        node.busy++;
+        request.setDequeueNanos(now);
+        long wait = now - request.getDispatchNanos();
+        queueWait.recordValue(wait);
+        tickQueueWait.recordValue(wait);
+        long serviceNanos = Server.serviceTimeMillis(request.getRequestSize(), jitter.nextInt(JITTER_MILLIS)) * 1_000_000L;
+        completions.add(new Completion(now + serviceNanos, seq++, node, request, serviceNanos));
+    }
+
+    private void complete(Completion c) {
+        Node node = c.node;
+        node.busy--;
+        node.busyNanos += c.serviceNanos;
+        tickServiceNanos += c.serviceNanos;
+        tickCompleted++;
+        node.server.simulatedCompletion(c.serviceNanos, now);
+        strategy.onRequestCompleted(node.server, c.serviceNanos);
+        long latency = now - c.request.getIngressNanos();
+        endToEnd.recordValue(latency);
+        sampleEndToEnd.recordValue(latency);
+
+        UserRequest next = node.queue.pollFirst();
+        if (next != null) {
+            start(node, next);
+        } else if (node.draining && node.busy == 0) {
+            node.stoppedAt = now;
+        }
+    }
+
+    /**
+     * One auto-scaler interval: the real AutoScaler decides, the simulator applies it.
+     */
+    private void tick() {
+        double measured = scaler.observe(now, received);
+        if (autoScale) {
+            int queued = 0;
+            for (Server s : active) {
+                queued += node(s).queue.size();
+            }
+            long queueDelayP99 = tickQueueWait.getValueAtPercentile(99);
+            double serviceSeconds = tickCompleted > 0
+                    ? tickServiceNanos / (double) tickCompleted / 1e9
+                    : AutoScaler.peakServiceSeconds(activeView);
+            int target = scaler.target(activeView, measured, queued, queueDelayP99, serviceSeconds);
+            int step = scaler.step(target, active.size(), queueDelayP99, now);
+            for (int i = 0; i < step; i++) {
+                addNode();
+            }
+            for (int i = 0; i < -step && active.size() > 1; i++) {
+                removeNode();
+            }
+            if (step != 0) {
+                serversChanged();
+            }
+        }
+        tickQueueWait.reset();
+        tickServiceNanos = 0;
+        tickCompleted = 0;
+    }
+
+    // ====== Membership ======
+
+    private void addNode() {
+        int id = nodes.size() + 1;
+        Server server = new Server(id, LoadBalancer.weightFor(id));
+        nodes.add(new Node(server, now));
+        active.add(server);
+        added++;
+    }
+
+    /**
+     * Retires the newest server, like LoadBalancer.removeServer(); it finishes its queue.
+     */
+    private void removeNode() {
+        Server server = active.remove(active.size() - 1);
+        Node node = node(server);
+        node.draining = true;
+        if (node.busy == 0 && node.queue.isEmpty()) {
+            node.stoppedAt = now;
+        }
+        removed++;
+    }
+
+    private void serversChanged() {
+        activeView = List.copyOf(active);
+        strategy.onServersChanged(activeView);
+    }
+
+    private Node node(Server server) {
+        return nodes.get(server.getServerId() - 1);
+    }
+
+    // ====== Helpers ======
+
+    /**
+     * Draws the next request (from the journal, or generated) and returns its arrival
+     * time, or Long.MAX_VALUE once the scenario has all its requests.
+     */
+    private long scheduleArrival() {
+        if (received >= requests) {
+            return Long.MAX_VALUE;
+        }
+        if (replay != null) {
+            try {
+                if (!replay.next()) {
+                    return Long.MAX_VALUE;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (replayOrigin < 0) {
+                replayOrigin = replay.getArrivalNanos();
+            }
+            pendingIP = replay.getPackedIP();
+            pendingSize = replay.getRequestSize();
+            return Math.max(now, replay.getArrivalNanos() - replayOrigin);
+        }
+        pendingIP = arrivals.nextInt();
+        pendingSize = arrivals.nextInt(MAX_REQUEST_SIZE) + 1;
+        return now + gap();
+    }
+
+    /**
+     * Exponential gap to the next arrival at the profile's current rate.
+     */
+    private long gap() {
+        double fraction = Math.min(1.0, received / (double) requests);
+        double currentRate = rate * profile.factor(fraction);
+        return Math.max(1, (long) (-Math.log(1.0 - arrivals.nextDouble()) / currentRate * 1e9));
+    }
+
+    private long busyNanos() {
+        long busy = 0;
+        for (Node node : nodes) {
+            busy += node.busyNanos;
+        }
+        return busy;
+    }
+
+    /**
+     * Mean of Server.serviceTimeMillis over request sizes and jitter.
+     */
+    static double meanServiceMillis() {
+        double sum = 0;
+        for (int size = 1; size <= MAX_REQUEST_SIZE; size++) {
+            sum += Server.expectedServiceTimeMillis(size);
+        }
+        return sum / MAX_REQUEST_SIZE;
+    }
+}
@@ -0,0 +1,104 @@
+package loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-aware routing: requests of the largest size class (see SizeScheduler) go to
+ * dedicated backends, everything else to the rest, so small requests never queue
+ * behind elephants in the first place.
+ *
+ * The last -Dlb.sched.largeShare of the active servers are dedicated. By default the
+ * share follows the traffic: large requests' fraction of the expected service time, since
+ * a few percent of requests can be most of the work. It is measured over one-second
+ * windows and recomputed once per window by whichever request closes it, each window
+ * weighing half of the new value, so the partition follows a shift in the workload
+ * within a few seconds and select() never sums the counters. Each partition keeps
+ * at least one server; with a single server both share it. Within a partition the pick
+ * is power of two choices on pending requests, like P2C. A small request may also take a
+ * dedicated server that is completely idle, so spare large capacity is not wasted.
+ */
+public class SizeAwareStrategy implements BalancingStrategy {
+
+    private static final double LARGE_SHARE =             // <= 0: follow the observed work split
+            Double.parseDouble(System.getProperty("lb.sched.largeShare", "0"));
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final double WINDOW_WEIGHT = 0.5;       // weight of the newest window in the share
+
+    private final LongAdder largeWork = new LongAdder();    // expected service ms routed this window
+    private final LongAdder totalWork = new LongAdder();
+    private final AtomicLong windowEndNanos = new AtomicLong();   // 0 = no request seen yet
+    private volatile double share = Double.NaN;             // NaN until the first window closes
+
+    @Override
+    public String getName() {
+        return "SizeAware";
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        boolean isLarge = SizeScheduler.isLarge(request);
+        if (LARGE_SHARE <= 0) {
+            observe(request, isLarge);
+        }
+        int size = servers.size();
+        if (size == 1) {
+            return servers.get(0);
+        }
+        int large = Math.min(size - 1, Math.max(1, (int) Math.round(size * largeShare())));
+        if (isLarge) {
+            return pick(servers, size - large, size);
+        }
+        Server server = pick(servers, 0, size - large);
+        if (server.getPendingRequests() > 0) {
+            Server spare = servers.get(size - large + BalancingStrategies.random().nextInt(large));
+            if (spare.getPendingRequests() == 0) {
+                return spare;
+            }
+        }
+        return server;
+    }
+
+    private double largeShare() {
+        if (LARGE_SHARE > 0) {
+            return LARGE_SHARE;
+        }
+        double current = share;
+        return Double.isNaN(current) ? 0.5 : current;
+    }
+
+    /**
+     * Counts the request's expected work, and folds the window into the share if this
+     * request closed it. Time is the request's ingress stamp, so the simulator's virtual
+     * clock drives the windows too.
+     */
+    private void observe(UserRequest request, boolean isLarge) {
+        long work = Server.expectedServiceTimeMillis(request.getRequestSize());
+        totalWork.add(work);
+        if (isLarge) {
+            largeWork.add(work);
+        }
+        long now = request.getIngressNanos();
+        long end = windowEndNanos.get();
+        if (end == 0) {
+            windowEndNanos.compareAndSet(0, now + WINDOW_NANOS);
+        } else if (now - end >= 0 && windowEndNanos.compareAndSet(end, now + WINDOW_NANOS)) {
+            long total = totalWork.sumThenReset();
+            long large = largeWork.sumThenReset();
+            if (total > 0) {
+                double measured = large / (double) total;
+                double previous = share;
+                share = Double.isNaN(previous) ? measured : WINDOW_WEIGHT * measured + (1 - WINDOW_WEIGHT) * previous;
+            }
+        }
+    }
+
+    /**
+     * Power of two choices among servers[from .. to).
+     */
+    private static Server pick(List<Server> servers, int from, int to) {
+        return BalancingStrategies.cheaperOfTwo(servers, from, to, Server::getPendingRequests);
+    }
+}
@@ -0,0 +1,154 @@
+package loadbalancer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size-aware scheduling between the size classes of a server queue.
+ *
+ * Service time grows as size^1.5, so one size-100 request holds a server about as long
+ * as fifteen size-1 requests. -Dlb.sched.classes splits request sizes into classes by
+ * their upper bounds (default "10,40": 1-10, 11-40, 41+). With a scheduling policy other
+ * than fifo, each server queue keeps one FIFO ring per class and asks its SizeScheduler
+ * which ring to serve next:
+ * - SJF: the smallest non-empty class, unless a head has waited longer than
+ *   -Dlb.sched.agingMs; then the oldest such head goes first, so large requests are
+ *   delayed but never starved.
+ * - WFQ: deficit round robin in expected service time, each class getting a quantum of
+ *   -Dlb.sched.weights (server-weight style list) x 100 ms per round, so every backlogged
+ *   class keeps its share of the server.
+ * An instance holds one queue's round-robin state and is only used under that queue's lock.
+ */
+final class SizeScheduler {
+
+    static final SchedulingPolicy POLICY = SchedulingPolicy.configured();
+    private static final int[] BOUNDS = parseBounds(System.getProperty("lb.sched.classes", "10,40"));
+    private static final int[] WEIGHTS = parseWeights(System.getProperty("lb.sched.weights", "1"));
+    private static final long AGING_NANOS = Long.getLong("lb.sched.agingMs", 2000L) * 1_000_000L;
+    private static final long QUANTUM_MILLIS = 100;   // expected service time per weight unit and round
+
+    // ====== WFQ state ======
+    private final long[] deficit = new long[classCount()];
+    private int cursor;
+    private boolean topUp = true;                     // cursor just moved: add its quantum first
+
+    private SizeScheduler() {
+    }
+
+    /**
+     * Returns a scheduler for a new server queue, or null if the policy is fifo.
+     */
+    static SizeScheduler configured() {
+        return POLICY == SchedulingPolicy.FIFO ? null : new SizeScheduler();
+    }
+
+    /**
+     * Number of size classes.
+     */
+    static int classCount() {
+        return BOUNDS.length + 1;
+    }
+
+    /**
+     * Returns the class of a request size (0 = smallest).
+     */
+    static int classOf(int requestSize) {
+        for (int c = 0; c < BOUNDS.length; c++) {
+            if (requestSize <= BOUNDS[c]) {
+                return c;
+            }
+        }
+        return BOUNDS.length;
+    }
+
+    /**
+     * Returns true for requests in the largest class.
+     */
+    static boolean isLarge(UserRequest request) {
+        return classOf(request.getRequestSize()) == BOUNDS.length;
+    }
+
+    /**
+     * Returns the size range of a class, e.g. "11-40" or "41+".
+     */
+    static String label(int sizeClass) {
+        int low = sizeClass == 0 ? 1 : BOUNDS[sizeClass - 1] + 1;
+        return sizeClass == BOUNDS.length ? low + "+" : low + "-" + BOUNDS[sizeClass];
+    }
+
+    /**
+     * Picks the class to serve next. At least one ring must be non-empty.
+     */
+    int next(ArrayDeque<UserRequest>[] rings, ToLongFunction<UserRequest> enqueuedAt) {
+        return POLICY == SchedulingPolicy.WFQ ? nextFair(rings) : nextShortest(rings, enqueuedAt);
+    }
+
+    private static int nextShortest(ArrayDeque<UserRequest>[] rings, ToLongFunction<UserRequest> enqueuedAt) {
+        long now = System.nanoTime();
+        int first = -1;
+        int aged = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int c = 0; c < rings.length; c++) {
+            UserRequest head = rings[c].peekFirst();
+            if (head == null) {
+                continue;
+            }
+            if (first < 0) {
+                first = c;
+            }
+            long enqueued = enqueuedAt.applyAsLong(head);
+            if (now - enqueued > AGING_NANOS && enqueued < oldest) {
+                oldest = enqueued;
+                aged = c;
+            }
+        }
+        return aged >= 0 ? aged : first;
+    }
+
+    private int nextFair(ArrayDeque<UserRequest>[] rings) {
+        while (true) {
+            UserRequest head = rings[cursor].peekFirst();
+            if (head == null) {
+                deficit[cursor] = 0;                  // idle classes do not bank credit
+                advance();
+                continue;
+            }
+            if (topUp) {
+                deficit[cursor] += WEIGHTS[cursor % WEIGHTS.length] * QUANTUM_MILLIS;
+                topUp = false;
+            }
+            long cost = Server.expectedServiceTimeMillis(head.getRequestSize());
+            if (cost <= deficit[cursor]) {
+                deficit[cursor] -= cost;
+                return cursor;
+            }
+            advance();
+        }
+    }
+
+    private void advance() {
+        cursor = (cursor + 1) % deficit.length;
+        topUp = true;
+    }
+
+    private static int[] parseBounds(String spec) {
+        return Arrays.stream(spec.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .filter(b -> b > 0)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static int[] parseWeights(String spec) {
+        String[] parts = spec.split(",");
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            weights[i] = Math.max(1, Integer.parseInt(parts[i].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,91 @@
+package loadbalancer;
+
+import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+
+/**
+ * Immutable series of recent values drawn as a small line chart in a table cell.
+ */
+final class Sparkline {
+
+    static final Sparkline EMPTY = new Sparkline(new double[0]);
+
+    private final double[] values;
+    private final double max;
+
+    Sparkline(double[] values) {
+        this.values = values;
+        double m = 0;
+        for (double v : values) {
+            m = Math.max(m, v);
+        }
+        this.max = m;
+    }
+
+    /**
+     * The newest value, or 0 if there is none.
+     */
+    double last() {
+        return values.length == 0 ? 0 : values[values.length - 1];
+    }
+
+    /**
+     * Table cell renderer for Sparkline values. One instance paints every cell of a column.
+     */
+    static final class Renderer extends JComponent implements TableCellRenderer {
+        private static final long serialVersionUID = 1L;
+        private static final Font FONT = new Font("Consolas", Font.PLAIN, 11);
+        private static final Color LINE = new Color(0, 255, 70);
+        private static final Color GRID = new Color(0, 100, 0);
+
+        private final String unit;
+        private Sparkline current = EMPTY;
+
+        Renderer(String unit) {
+            this.unit = unit;
+            setOpaque(true);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                                                       boolean isSelected, boolean hasFocus,
+                                                       int row, int column) {
+            current = value instanceof Sparkline ? (Sparkline) value : EMPTY;
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            int w = getWidth();
+            int h = getHeight();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, w, h);
+
+            String label = String.format("%.0f %s", current.last(), unit);
+            g.setFont(FONT);
+            FontMetrics fm = g.getFontMetrics();
+            int textWidth = fm.stringWidth(label) + 4;
+            int chartWidth = w - textWidth - 4;
+
+            double[] v = current.values;
+            if (v.length > 1 && chartWidth > 2) {
+                g.setColor(GRID);
+                g.drawLine(2, h - 3, 2 + chartWidth, h - 3);
+                g.setColor(LINE);
+                double scale = current.max > 0 ? (h - 6) / current.max : 0;
+                int prevX = 2;
+                int prevY = h - 3 - (int) (v[0] * scale);
+                for (int i = 1; i < v.length; i++) {
+                    int x = 2 + (int) ((long) i * chartWidth / (v.length - 1));
+                    int y = h - 3 - (int) (v[i] * scale);
+                    g.drawLine(prevX, prevY, x, y);
+                    prevX = x;
+                    prevY = y;
+                }
+            }
+            g.setColor(LINE);
+            g.drawString(label, w - textWidth, (h + fm.getAscent() - fm.getDescent()) / 2);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Explicit session affinity: a client IP keeps going to the server it was first sent to.
+ *
+ * Pins are kept in an AffinityTable with a TTL (-Dlb.affinity.ttlMs) and a bounded size
+ * (-Dlb.affinity.entries). Unlike IPHashing, a pin survives servers being added or
+ * removed; only clients of a server that left are moved. The first request of a client,
+ * and any request whose pin expired, goes to -Dlb.affinity.fallback (default P2C) and
+ * pins the client to the server it picked. If the pinned server is no longer active
+ * (removed, ejected), the fallback picks again and the client is re-pinned. If it has
+ * more than -Dlb.affinity.maxPending requests waiting, that one request spills to the
+ * fallback pick, but the pin stays.
+ *
+ * Pinned server ids are resolved through an open-addressing id index rebuilt whenever
+ * servers change, so select() is O(1) and allocation-free.
+ */
+public class StickyStrategy implements BalancingStrategy {
+
+    private static final String FALLBACK = System.getProperty("lb.affinity.fallback", "P2C");
+    private static final int ENTRIES = Integer.getInteger("lb.affinity.entries", 1 << 20);
+    private static final long TTL_MS = Long.getLong("lb.affinity.ttlMs", 300_000L);
+    private static final int MAX_PENDING = Integer.getInteger("lb.affinity.maxPending", Server.queueCapacity() / 2);
+
+    /**
+     * Immutable server id -> server map with linear probing.
+     */
+    private static final class ServerIndex {
+        final int[] ids;
+        final Server[] servers;
+
+        ServerIndex(List<Server> active) {
+            int capacity = Integer.highestOneBit(Math.max(2, active.size() * 2) - 1) << 1;
+            ids = new int[capacity];
+            servers = new Server[capacity];
+            for (Server server : active) {
+                int slot = slot(server.getServerId());
+                while (ids[slot] != AffinityTable.NONE) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                ids[slot] = server.getServerId();
+                servers[slot] = server;
+            }
+        }
+
+        Server get(int id) {
+            for (int slot = slot(id); ids[slot] != AffinityTable.NONE; slot = (slot + 1) & (ids.length - 1)) {
+                if (ids[slot] == id) {
+                    return servers[slot];
+                }
+            }
+            return null;
+        }
+
+        private int slot(int id) {
+            return (id * 0x9E3779B9 >>> 16) & (ids.length - 1);
+        }
+    }
+
+    private final BalancingStrategy fallback;
+    private final AffinityTable table = new AffinityTable(ENTRIES, TTL_MS);
+    private volatile ServerIndex index = new ServerIndex(List.of());
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder repins = new LongAdder();
+    private final LongAdder spills = new LongAdder();
+
+    public StickyStrategy() {
+        if ("Sticky".equals(FALLBACK)) {
+            throw new IllegalArgumentException("lb.affinity.fallback cannot be Sticky");
+        }
+        this.fallback = BalancingStrategies.create(FALLBACK);
+    }
+
+    @Override
+    public String getName() {
+        return "Sticky";
+    }
+
+    @Override
+    public boolean isSticky() {
+        return true;
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        int ip = request.getPackedIP();
+        long now = request.getIngressNanos();
+        int pinned = table.lookup(ip, now);
+        if (pinned != AffinityTable.NONE) {
+            Server server = index.get(pinned);
+            if (server != null && server.getStatus() == Server.Status.ACTIVE) {
+                if (server.getPendingRequests() <= MAX_PENDING) {
+                    hits.increment();
+                    return server;
+                }
+                spills.increment();
+                return fallback.select(request, servers);
+            }
+            repins.increment();
+        } else {
+            misses.increment();
+        }
+        Server server = fallback.select(request, servers);
+        table.pin(ip, server.getServerId(), now);
+        return server;
+    }
+
+    @Override
+    public void onServersChanged(List<Server> servers) {
+        index = new ServerIndex(servers);
+        fallback.onServersChanged(servers);
+    }
+
+    @Override
+    public void onRequestQueued(Server server) {
+        fallback.onRequestQueued(server);
+    }
+
+    @Override
+    public void onRequestDropped(Server server) {
+        fallback.onRequestDropped(server);
+    }
+
+    @Override
+    public void onRequestStolen(Server from, Server to) {
+        fallback.onRequestStolen(from, to);
+    }
+
+    @Override
+    public void onRequestCompleted(Server server, long serviceTimeNanos) {
+        fallback.onRequestCompleted(server, serviceTimeNanos);
+    }
+
+    /**
+     * Requests sent to the server their client was pinned to.
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Requests from clients with no live pin (new, or expired).
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Clients moved because their pinned server left the active set.
+     */
+    long getRepins() {
+        return repins.sum();
+    }
+
+    /**
+     * Requests sent elsewhere because the pinned server was overloaded.
+     */
+    long getSpills() {
+        return spills.sum();
+    }
+
+    AffinityTable getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,270 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warm, keep-alive connections to each upstream, opened ahead of time by one background thread.
+ *
+ * A relayed client connection takes an idle upstream connection instead of paying for the
+ * TCP handshake on its critical path. Connections are not handed back after a session:
+ * a raw byte stream cannot be shared between clients without knowing where one client's
+ * exchange ends, so the pool refills itself instead. Idle connections older than
+ * -Dlb.proxy.pool.idleMs are closed, since upstreams usually time out idle peers, and
+ * poll() probes each one with a non-blocking read so a connection the upstream already
+ * closed is discarded instead of handed to a client.
+ *
+ * The filler never blocks: it starts non-blocking connects and finishes them on later
+ * rounds, so one unreachable upstream cannot hold up the others. An upstream whose
+ * connects fail is retried with exponential backoff, and only the change between
+ * reachable and unreachable is logged.
+ */
+final class UpstreamPool {
+
+    // ====== Config ======
+    static final int SIZE = Integer.getInteger("lb.proxy.pool.size", 4);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("lb.proxy.pool.idleMs", 4_000L));
+    private static final long CONNECT_TIMEOUT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("lb.proxy.connectTimeoutMs", 1000));
+    private static final long REFILL_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+    private static final ThreadLocal<ByteBuffer> PROBE = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1));
+
+    private static final Map<InetSocketAddress, UpstreamPool> pools = new ConcurrentHashMap<>();
+
+    private final InetSocketAddress address;
+    private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    // ====== Filler state (Upstream-Pool thread only) ======
+    private final List<Idle> connecting = new ArrayList<>();     // sinceNanos = connect started
+    private int failures;                                         // consecutive failed rounds
+    private long retryAtNanos;
+
+    /**
+     * A channel with the time it became idle (or, while connecting, started to connect).
+     */
+    private static final class Idle {
+        final SocketChannel channel;
+        final long sinceNanos;
+
+        Idle(SocketChannel channel, long sinceNanos) {
+            this.channel = channel;
+            this.sinceNanos = sinceNanos;
+        }
+    }
+
+    private UpstreamPool(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * Returns the pool for an upstream, creating it on first use.
+     */
+    static UpstreamPool of(InetSocketAddress address) {
+        return pools.computeIfAbsent(address, UpstreamPool::new);
+    }
+
+    /**
+     * Starts the thread that keeps every active upstream's pool topped up.
+     */
+    static void start() {
+        if (SIZE <= 0) {
+            return;
+        }
+        Thread filler = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(REFILL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                maintain();
+            }
+        }, "Upstream-Pool");
+        filler.setDaemon(true);
+        filler.start();
+    }
+
+    /**
+     * Takes a warm non-blocking connection, or returns null if none is ready.
+     */
+    SocketChannel poll() {
+        Idle c;
+        while ((c = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            if (System.nanoTime() - c.sinceNanos < IDLE_NANOS && isUnused(c.channel)) {
+                return c.channel;
+            }
+            closeQuietly(c.channel);
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the connection is open and has nothing to read: -1 means the
+     * upstream closed it (FIN), an exception that it reset it, and bytes that it is no
+     * longer a fresh stream.
+     */
+    private static boolean isUnused(SocketChannel ch) {
+        try {
+            return ch.isOpen() && ch.read(PROBE.get().clear()) == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a non-blocking connection; the caller finishes it with finishConnect().
+     */
+    SocketChannel connectAsync() throws IOException {
+        SocketChannel ch = SocketChannel.open();
+        try {
+            configure(ch);
+            ch.configureBlocking(false);
+            ch.connect(address);
+            return ch;
+        } catch (IOException e) {
+            closeQuietly(ch);
+            throw e;
+        }
+    }
+
+    /**
+     * Fills pools of active upstreams, expires old idle connections and drops pools
+     * of upstreams that are no longer active.
+     */
+    private static void maintain() {
+        for (Server s : LoadBalancer.registry.active()) {
+            if (s.getUpstream() != null) {
+                of(s.getUpstream()).fill();
+            }
+        }
+        for (Iterator<UpstreamPool> it = pools.values().iterator(); it.hasNext(); ) {
+            UpstreamPool pool = it.next();
+            if (!isActive(pool.address)) {
+                it.remove();
+                pool.closeAll();
+            } else {
+                pool.expire();
+            }
+        }
+    }
+
+    private static boolean isActive(InetSocketAddress address) {
+        for (Server s : LoadBalancer.registry.active()) {
+            if (address.equals(s.getUpstream())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves finished connects to the idle list and starts new ones up to SIZE, unless
+     * the upstream is backing off.
+     */
+    private void fill() {
+        long now = System.nanoTime();
+        String failure = null;
+        for (Iterator<Idle> it = connecting.iterator(); it.hasNext(); ) {
+            Idle c = it.next();
+            try {
+                if (c.channel.finishConnect()) {
+                    it.remove();
+                    idle.addLast(new Idle(c.channel, now));
+                    idleCount.incrementAndGet();
+                    reachable();
+                } else if (now - c.sinceNanos >= CONNECT_TIMEOUT_NANOS) {
+                    it.remove();
+                    closeQuietly(c.channel);
+                    failure = "connect timed out";
+                }
+            } catch (IOException e) {
+                it.remove();
+                closeQuietly(c.channel);
+                failure = String.valueOf(e.getMessage());
+            }
+        }
+        if (failure == null && now - retryAtNanos >= 0) {
+            while (idleCount.get() + connecting.size() < SIZE) {
+                try {
+                    connecting.add(new Idle(connectAsync(), now));
+                } catch (IOException e) {
+                    failure = String.valueOf(e.getMessage());
+                    break;
+                }
+            }
+        }
+        if (failure != null) {
+            unreachable(now, failure);
+        }
+    }
+
+    private void reachable() {
+        if (failures > 0) {
+            Log.info("Upstream " + address + " reachable again after " + failures + " failed connect rounds");
+            failures = 0;
+            retryAtNanos = 0;
+        }
+    }
+
+    private void unreachable(long now, String reason) {
+        if (failures == 0) {
+            Log.warn("Upstream " + address + " connect failed: " + reason + "; retrying with backoff");
+        }
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, REFILL_MILLIS << Math.min(failures, 10));
+        retryAtNanos = now + TimeUnit.MILLISECONDS.toNanos(backoff);
+        failures++;
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        Idle c;
+        while ((c = idle.peekFirst()) != null && now - c.sinceNanos >= IDLE_NANOS) {
+            if (idle.remove(c)) {
+                idleCount.decrementAndGet();
+                closeQuietly(c.channel);
+            }
+        }
+    }
+
+    private void closeAll() {
+        Idle c;
+        while ((c = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            closeQuietly(c.channel);
+        }
+        for (Idle pending : connecting) {
+            closeQuietly(pending.channel);
+        }
+        connecting.clear();
+    }
+
+    private static void configure(SocketChannel ch) throws IOException {
+        ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ch.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+    }
+
+    static void closeQuietly(SocketChannel ch) {
+        if (ch == null) {
+            return;
+        }
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
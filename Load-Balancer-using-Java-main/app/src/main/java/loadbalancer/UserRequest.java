@@ -0,0 +1,171 @@
+package loadbalancer;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class UserRequest implements Serializable {
+
+   private static final long serialVersionUID = 1L;
+
+   // Serialized form stays {String IP, int RequestSize} so older clients keep working
+   private static final ObjectStreamField[] serialPersistentFields = {
+         new ObjectStreamField("IP", String.class),
+         new ObjectStreamField("RequestSize", int.class)
+   };
+
+   private int packedIP;
+   private int RequestSize;
+   private transient String IP;   // dotted form, built on first getIP()
+
+   // Lifecycle timestamps (System.nanoTime), filled in by the balancer
+   private transient long ingressNanos;
+   private transient long dispatchNanos;
+   private transient long dequeueNanos;
+   private transient boolean pinned;   // placed by an affinity strategy; never stolen by another server
+
+   public UserRequest() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      this.packedIP = random.nextInt();
+      this.RequestSize = random.nextInt(100) + 1;
+   }
+
+   /**
+    * Creates a request from an already packed IPv4 address (used by the binary codec).
+    */
+   public UserRequest(int packedIP, int requestSize) {
+      this.packedIP = packedIP;
+      this.RequestSize = requestSize;
+   }
+
+   /**
+    * Reinitialises a recycled request (see RequestPool).
+    */
+   void reset(int packedIP, int requestSize) {
+      this.packedIP = packedIP;
+      this.RequestSize = requestSize;
+      this.IP = null;
+      this.ingressNanos = 0;
+      this.dispatchNanos = 0;
+      this.dequeueNanos = 0;
+      this.pinned = false;
+   }
+
+   public String getIP() {
+      if (IP == null) {
+         IP = formatIP(packedIP);
+      }
+      return IP;
+   }
+
+   /**
+    * Returns the IPv4 address packed big-endian into an int.
+    */
+   public int getPackedIP() {
+      return packedIP;
+   }
+
+   public int getRequestSize() {
+      return RequestSize;
+   }
+
+   public long getIngressNanos() {
+      return ingressNanos;
+   }
+
+   void setIngressNanos(long nanos) {
+      this.ingressNanos = nanos;
+   }
+
+   public long getDispatchNanos() {
+      return dispatchNanos;
+   }
+
+   void setDispatchNanos(long nanos) {
+      this.dispatchNanos = nanos;
+   }
+
+   public long getDequeueNanos() {
+      return dequeueNanos;
+   }
+
+   void setDequeueNanos(long nanos) {
+      this.dequeueNanos = nanos;
+   }
+
+   public boolean isPinned() {
+      return pinned;
+   }
+
+   void setPinned(boolean pinned) {
+      this.pinned = pinned;
+   }
+
+   /**
+    * Packs a dotted IPv4 string into an int.
+    */
+   public static int packIP(String ip) {
+      int packed = 0;
+      int octet = 0;
+      int octets = 0;
+      int digits = 0;
+      for (int i = 0; i <= ip.length(); i++) {
+         char ch = i < ip.length() ? ip.charAt(i) : '.';
+         if (ch == '.') {
+            if (digits == 0 || octet > 255 || ++octets > 4) {
+               throw new IllegalArgumentException("Invalid IPv4 address: " + ip);
+            }
+            packed = (packed << 8) | octet;
+            octet = 0;
+            digits = 0;
+         } else if (ch >= '0' && ch <= '9' && digits < 3) {
+            octet = octet * 10 + (ch - '0');
+            digits++;
+         } else {
+            throw new IllegalArgumentException("Invalid IPv4 address: " + ip);
+         }
+      }
+      if (octets != 4) {
+         throw new IllegalArgumentException("Invalid IPv4 address: " + ip);
+      }
+      return packed;
+   }
+
+   /**
+    * Formats a packed IPv4 address as a dotted string.
+    */
+   public static String formatIP(int packed) {
+      return (packed >>> 24) + "." + ((packed >>> 16) & 0xFF) + "." + ((packed >>> 8) & 0xFF) + "." + (packed & 0xFF);
+   }
+
+   private void writeObject(ObjectOutputStream out) throws IOException {
+      ObjectOutputStream.PutField fields = out.putFields();
+      fields.put("IP", getIP());
+      fields.put("RequestSize", RequestSize);
+      out.writeFields();
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      ObjectInputStream.GetField fields = in.readFields();
+      String ip = (String) fields.get("IP", null);
+      if (ip == null) {
+         throw new InvalidObjectException("UserRequest without IP");
+      }
+      try {
+         this.packedIP = packIP(ip);
+      } catch (IllegalArgumentException e) {
+         throw new InvalidObjectException(e.getMessage());
+      }
+      this.IP = ip;
+      this.RequestSize = fields.get("RequestSize", 0);
+   }
+
+   @Override
+   public String toString() {
+      return "UserRequest [IP=" + getIP() + ", RequestSize=" + RequestSize + "]";
+   }
+}
@@ -0,0 +1,93 @@
+package loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Smooth weighted round robin (the NGINX algorithm).
+ *
+ * A server with weight w gets w picks per cycle, spread out rather than in bursts
+ * (weights 5,1,1 give a a b a c a a, not a a a a a b c). The cycle is computed once
+ * whenever the server set changes; selection is then one atomic increment.
+ */
+public class WeightedRoundRobinStrategy implements BalancingStrategy {
+
+    private static final int MAX_CYCLE_LENGTH = 1 << 16;
+
+    private volatile Server[] cycle = new Server[0];
+    private final AtomicLong cursor = new AtomicLong();
+
+    @Override
+    public String getName() {
+        return "WeightedRoundRobin";
+    }
+
+    @Override
+    public Server select(UserRequest request, List<Server> servers) {
+        Server[] c = cycle;
+        if (c.length == 0) {
+            return servers.get(0);
+        }
+        return c[(int) (cursor.getAndIncrement() % c.length)];
+    }
+
+    @Override
+    public void onServersChanged(List<Server> servers) {
+        cycle = buildCycle(servers.toArray(new Server[0]));
+    }
+
+    /**
+     * Runs the smooth WRR selection over one full cycle and records the order.
+     */
+    static Server[] buildCycle(Server[] servers) {
+        int n = servers.length;
+        if (n == 0) {
+            return servers;
+        }
+
+        int[] weights = new int[n];
+        int divisor = 0;
+        for (int i = 0; i < n; i++) {
+            weights[i] = Math.max(1, servers[i].getWeight());
+            divisor = gcd(divisor, weights[i]);
+        }
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            weights[i] /= divisor;
+            total += weights[i];
+        }
+        if (total > MAX_CYCLE_LENGTH) {
+            // Scale down very large weight sums; ratios are kept approximately
+            double scale = MAX_CYCLE_LENGTH / (double) total;
+            total = 0;
+            for (int i = 0; i < n; i++) {
+                weights[i] = Math.max(1, (int) (weights[i] * scale));
+                total += weights[i];
+            }
+        }
+
+        Server[] result = new Server[(int) total];
+        long[] currentWeight = new long[n];
+        for (int pick = 0; pick < result.length; pick++) {
+            int best = 0;
+            for (int i = 0; i < n; i++) {
+                currentWeight[i] += weights[i];
+                if (currentWeight[i] > currentWeight[best]) {
+                    best = i;
+                }
+            }
+            currentWeight[best] -= total;
+            result[pick] = servers[best];
+        }
+        return result;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
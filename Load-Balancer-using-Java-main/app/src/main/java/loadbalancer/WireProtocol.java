@@ -0,0 +1,133 @@
+package loadbalancer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+
+/**
+ * Constants and helpers for the load balancer's wire protocol.
+ *
+ * A connection starts in one of two ways:
+ * - Legacy: a Java serialization stream header (0xACED) followed by exactly one
+ *   UserRequest, after which the client closes the socket.
+ * - Framed: a HELLO preamble (MAGIC + format byte). The balancer answers with one
+ *   byte holding the accepted format, then the client sends any number of
+ *   length-prefixed frames ([int length][payload]) on the same connection.
+ *   Payload layouts are defined by the RequestCodec implementations.
+ *
+ * The balancer never answers a request, except with one RESPONSE_BUSY byte when a full
+ * queue rejected it, so overloaded clients learn about it at once instead of timing out.
+ *
+ * Java deserialization is restricted to UserRequest by an ObjectInputFilter, and can be
+ * switched off entirely with -Dlb.wire.serialized=false.
+ */
+public final class WireProtocol {
+
+    // ====== Preamble ======
+    public static final int MAGIC = 0x4C425731;                 // "LBW1"
+    public static final short STREAM_MAGIC = (short) 0xACED;     // Java serialization header
+    public static final int HELLO_LENGTH = 5;                    // MAGIC + format byte
+
+    // ====== Formats ======
+    public static final byte FORMAT_REJECTED = 0;
+    public static final byte FORMAT_SERIALIZED = 1;
+    public static final byte FORMAT_BINARY = 2;
+
+    // ====== Responses ======
+    public static final byte RESPONSE_BUSY = (byte) 0xFF;
+
+    // ====== Limits ======
+    public static final int FRAME_HEADER_LENGTH = 4;
+    public static final int MAX_FRAME_LENGTH = 8 * 1024;
+
+    // ====== Security ======
+    public static final boolean SERIALIZED_ALLOWED =
+            Boolean.parseBoolean(System.getProperty("lb.wire.serialized", "true"));
+    private static final ObjectInputFilter REQUEST_FILTER = ObjectInputFilter.Config.createFilter(
+            "loadbalancer.UserRequest;maxdepth=2;maxrefs=8;maxbytes=" + MAX_FRAME_LENGTH + ";!*");
+    private static final String LEGACY_CLASS_NAME = "UserRequest";   // pre-package clients
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Writes the HELLO preamble asking for the given format.
+     */
+    public static void writeHello(OutputStream out, byte format) throws IOException {
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        out.write(format);
+        out.flush();
+    }
+
+    /**
+     * Sends HELLO and waits for the balancer's answer.
+     * Returns the accepted format, or FORMAT_REJECTED.
+     */
+    public static byte handshake(OutputStream out, InputStream in, byte format) throws IOException {
+        writeHello(out, format);
+        int accepted = in.read();
+        if (accepted < 0) {
+            throw new EOFException("connection closed during handshake");
+        }
+        return (byte) accepted;
+    }
+
+    /**
+     * Returns the format the balancer accepts for a requested one.
+     */
+    public static byte acceptFormat(byte requested) {
+        if (requested == FORMAT_BINARY || (requested == FORMAT_SERIALIZED && SERIALIZED_ALLOWED)) {
+            return requested;
+        }
+        return FORMAT_REJECTED;
+    }
+
+    /**
+     * Opens an ObjectInputStream that only accepts UserRequest.
+     * Streams from clients built before UserRequest moved into this package are mapped too.
+     */
+    public static ObjectInputStream filteredInput(InputStream in) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(in) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (LEGACY_CLASS_NAME.equals(desc.getName())) {
+                    return UserRequest.class;
+                }
+                return super.resolveClass(desc);
+            }
+        };
+        ois.setObjectInputFilter(REQUEST_FILTER);
+        return ois;
+    }
+
+    /**
+     * Serializes a request into a standalone Java serialization payload.
+     */
+    public static byte[] serialize(UserRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(request);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads one serialized request from the given slice of a byte array.
+     */
+    public static UserRequest deserialize(byte[] data, int offset, int length)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = filteredInput(new ByteArrayInputStream(data, offset, length))) {
+            return (UserRequest) in.readObject();
+        }
+    }
+}
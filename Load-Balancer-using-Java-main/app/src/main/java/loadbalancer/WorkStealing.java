@@ -0,0 +1,83 @@
+package loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Optional work stealing between server queues (-Dlb.steal=true).
+ *
+ * A server that runs out of work takes the newest request from the tail of the most
+ * backed-up peer's queue. Taking from the tail leaves the victim's remaining requests
+ * in order, and requests placed by an affinity strategy (IPHashing, Maglev) are pinned
+ * and never move. With many servers only a random sample of peers is compared, so an
+ * idle server never scans the whole fleet.
+ *
+ * Thread-model servers look for work every lb.steal.pollMs while idle; in the
+ * concurrent model a "WorkStealer" thread nudges idle servers at the same rate.
+ */
+final class WorkStealing {
+
+    // ====== Config ======
+    static final boolean ENABLED = Boolean.getBoolean("lb.steal");
+    static final long POLL_MILLIS = Long.getLong("lb.steal.pollMs", 10L);
+    private static final int MIN_BACKLOG = Integer.getInteger("lb.steal.minBacklog", 1);
+    private static final int SAMPLE_SIZE = 8;
+
+    private WorkStealing() {
+    }
+
+    /**
+     * Starts the idle-server ticker if stealing is on and servers run concurrently.
+     */
+    static void start() {
+        if (!ENABLED || !Server.isConcurrentModel()) {
+            return;
+        }
+        Thread ticker = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (Server s : LoadBalancer.registry.active()) {
+                    s.stealIfIdle();
+                }
+            }
+        }, "WorkStealer");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Returns the peer with the deepest queue (at least lb.steal.minBacklog), or null.
+     */
+    static Server findVictim(Server thief) {
+        List<Server> servers = LoadBalancer.registry.active();
+        int size = servers.size();
+        Server victim = null;
+        int deepest = MIN_BACKLOG - 1;
+
+        if (size <= SAMPLE_SIZE + 1) {
+            for (Server s : servers) {
+                int queued = s.getQueuedRequests();
+                if (s != thief && queued > deepest) {
+                    victim = s;
+                    deepest = queued;
+                }
+            }
+            return victim;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            Server s = servers.get(random.nextInt(size));
+            int queued = s.getQueuedRequests();
+            if (s != thief && queued > deepest) {
+                victim = s;
+                deepest = queued;
+            }
+        }
+        return victim;
+    }
+}
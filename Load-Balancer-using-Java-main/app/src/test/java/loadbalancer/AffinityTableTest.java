@@ -0,0 +1,80 @@
+package loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class AffinityTableTest {
+
+    private static final long MS = 1_000_000;
+    private static final long TTL_MS = 1000;
+
+    // Last-seen times are int milliseconds: this is 100 ms before they wrap
+    private static final long BEFORE_WRAP = (Integer.MAX_VALUE - 100L) * MS;
+
+    @Test
+    void keepsPinWithinTtlAcrossMillisWrap() {
+        AffinityTable table = new AffinityTable(1024, TTL_MS);
+        table.pin(1, 7, BEFORE_WRAP);
+        assertEquals(7, table.lookup(1, BEFORE_WRAP + 999 * MS));
+        assertEquals(0, table.getExpirations());
+    }
+
+    @Test
+    void expiresPinAfterTtlAcrossMillisWrap() {
+        AffinityTable table = new AffinityTable(1024, TTL_MS);
+        table.pin(1, 7, BEFORE_WRAP);
+        assertEquals(AffinityTable.NONE, table.lookup(1, BEFORE_WRAP + 1001 * MS));
+        assertEquals(1, table.getExpirations());
+    }
+
+    @Test
+    void evictsLeastRecentlySeenClientOfAFullSet() {
+        // 8 slots make a single set, so every IP competes for it
+        AffinityTable table = new AffinityTable(8, 10 * TTL_MS);
+        long start = 1000 * MS;
+        for (int ip = 1; ip <= 8; ip++) {
+            table.pin(ip, ip, start + ip * MS);
+        }
+        // Seen again after TTL / 16, so IP 1 is now the most recent and IP 2 the least
+        assertEquals(1, table.lookup(1, start + 1000 * MS));
+
+        table.pin(9, 9, start + 1000 * MS);
+        assertEquals(1, table.getEvictions());
+        assertEquals(AffinityTable.NONE, table.lookup(2, start + 1000 * MS));
+        assertEquals(1, table.lookup(1, start + 1000 * MS));
+        for (int ip = 3; ip <= 9; ip++) {
+            assertEquals(ip, table.lookup(ip, start + 1000 * MS));
+        }
+    }
+
+    @Test
+    void lookupNeverSeesAnotherClientsServer() throws InterruptedException {
+        // 16 clients fight over one set of 8 slots; each pins to the server with its own id
+        AffinityTable table = new AffinityTable(8, 10 * TTL_MS);
+        AtomicInteger wrong = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int first = t * 4 + 1;
+            threads[t] = new Thread(() -> {
+                for (int n = 0; n < 200_000; n++) {
+                    int ip = first + n % 4;
+                    long now = System.nanoTime();
+                    int server = table.lookup(ip, now);
+                    if (server == AffinityTable.NONE) {
+                        table.pin(ip, ip, now);
+                    } else if (server != ip) {
+                        wrong.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, wrong.get());
+    }
+}
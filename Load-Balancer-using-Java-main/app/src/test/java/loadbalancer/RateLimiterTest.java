@@ -0,0 +1,73 @@
+package loadbalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+    private static final long MS = 1_000_000;
+
+    // 10 req/s: one request costs 100 ms of bucket time
+    private static final double RATE = 10;
+
+    private final long start = System.nanoTime();
+
+    @Test
+    void allowsBurstThenRejects() {
+        RateLimiter limiter = new RateLimiter(RATE, 3, 1024);
+        assertTrue(limiter.tryAcquire(1, start));
+        assertTrue(limiter.tryAcquire(1, start));
+        assertTrue(limiter.tryAcquire(1, start));
+        assertFalse(limiter.tryAcquire(1, start));
+        assertTrue(limiter.tryAcquire(2, start), "other clients have their own bucket");
+        assertEquals(2, limiter.getClients());
+    }
+
+    @Test
+    void refillsOneRequestPerInterval() {
+        RateLimiter limiter = new RateLimiter(RATE, 2, 1024);
+        assertTrue(limiter.tryAcquire(1, start));
+        assertTrue(limiter.tryAcquire(1, start));
+        assertFalse(limiter.tryAcquire(1, start + 50 * MS));
+        assertTrue(limiter.tryAcquire(1, start + 100 * MS));
+        assertFalse(limiter.tryAcquire(1, start + 100 * MS));
+        assertTrue(limiter.tryAcquire(1, start + 200 * MS));
+    }
+
+    @Test
+    void evictsIdlestClientOfAFullSet() {
+        // 8 slots make a single set, so every IP competes for it
+        RateLimiter limiter = new RateLimiter(RATE, 1, 8);
+        for (int ip = 1; ip <= 8; ip++) {
+            assertTrue(limiter.tryAcquire(ip, start + ip * MS));
+        }
+        assertTrue(limiter.tryAcquire(9, start + 9 * MS));
+        assertEquals(8, limiter.getClients());
+        assertEquals(1, limiter.getEvictions());
+
+        // IP 1 was idle the longest: its empty bucket is gone, the others are kept
+        for (int ip = 2; ip <= 9; ip++) {
+            assertFalse(limiter.tryAcquire(ip, start + 10 * MS), "ip " + ip);
+        }
+        assertTrue(limiter.tryAcquire(1, start + 10 * MS));
+        assertEquals(2, limiter.getEvictions());
+    }
+
+    @Test
+    void sweepFreesOnlyFullBuckets() {
+        RateLimiter limiter = new RateLimiter(RATE, 1, 8);
+        assertTrue(limiter.tryAcquire(1, start));
+        assertTrue(limiter.tryAcquire(2, start + 50 * MS));
+
+        limiter.sweep(8, start + 120 * MS);
+        assertEquals(1, limiter.getClients(), "client 2 still owes time");
+        assertFalse(limiter.tryAcquire(2, start + 120 * MS));
+
+        limiter.sweep(8, start + 1000 * MS);
+        assertEquals(0, limiter.getClients());
+        assertEquals(0, limiter.getEvictions());
+    }
+}
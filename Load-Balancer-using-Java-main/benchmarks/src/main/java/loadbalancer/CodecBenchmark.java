@@ -0,0 +1,85 @@
+package loadbalancer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserRequest encode/decode: Java serialization frames vs the binary codec.
+ * decodeBinaryPooled is the ingress hot path with request recycling on; run it
+ * with -prof gc to check it allocates ~0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlb.pool.size=1024", "-Dlb.log.level=OFF"})
+public class CodecBenchmark {
+
+    private final UserRequest request = new UserRequest(0x0A000001, 42);
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private ByteBuffer binaryFrame;
+    private ByteBuffer serializedFrame;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        binaryFrame = ByteBuffer.allocate(BinaryRequestCodec.FRAME_LENGTH);
+        BinaryRequestCodec.INSTANCE.encode(request, binaryFrame);
+        binaryFrame.flip();
+
+        serializedFrame = ByteBuffer.allocate(1024);
+        SerializedRequestCodec.INSTANCE.encode(request, serializedFrame);
+        serializedFrame.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeBinary() {
+        buffer.clear();
+        BinaryRequestCodec.INSTANCE.encode(request, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeSerialized() throws IOException {
+        buffer.clear();
+        SerializedRequestCodec.INSTANCE.encode(request, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public UserRequest decodeBinary() throws IOException {
+        return decode(BinaryRequestCodec.INSTANCE, binaryFrame);
+    }
+
+    @Benchmark
+    public UserRequest decodeSerialized() throws IOException {
+        return decode(SerializedRequestCodec.INSTANCE, serializedFrame);
+    }
+
+    @Benchmark
+    public int decodeBinaryPooled() throws IOException {
+        UserRequest decoded = decode(BinaryRequestCodec.INSTANCE, binaryFrame);
+        int size = decoded.getRequestSize();
+        RequestPool.release(decoded);
+        return size;
+    }
+
+    private static UserRequest decode(RequestCodec codec, ByteBuffer frame) throws IOException {
+        frame.rewind();
+        int length = frame.getInt();
+        return codec.decode(frame, length);
+    }
+}
@@ -0,0 +1,99 @@
+package loadbalancer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end dispatch throughput: producer threads submit requests as an ingress
+ * would, dispatcher workers route them, and servers with zero simulated work drain them.
+ * Run with -t 1..N to vary producers; the "dispatched" counter is the rate the
+ * dispatcher actually sustained, not just what producers managed to enqueue.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dlb.server.timeScale=0", "-Dlb.log.level=OFF",
+        "-Dlb.production=true", "-Dlb.server.queueCapacity=65536", "-Djava.awt.headless=true"})
+@Threads(1)
+public class DispatchBenchmark {
+
+    private static final int MAX_BACKLOG = 50_000;
+
+    @State(Scope.Benchmark)
+    public static class Engine {
+
+        @Param({"RoundRobin", "LeastConnections", "P2C"})
+        public String strategy;
+
+        @Param({"8"})
+        public int servers;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int i = 0; i < servers; i++) {
+                LoadBalancer.addServer();
+            }
+            LoadBalancer.registry.activateStrategy(strategy);
+            LoadBalancer.dispatcher.start();
+        }
+    }
+
+    /**
+     * JMH sums aux counters over threads, so each thread reports its share of the global count.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long dispatched;
+        private long startCount;
+        private int threads;
+
+        @Setup(Level.Iteration)
+        public void setUp(BenchmarkParams params) {
+            threads = params.getThreads();
+            startCount = LoadBalancer.totalRequests.sum();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            dispatched = (LoadBalancer.totalRequests.sum() - startCount) / threads;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        int shard;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            shard = LoadBalancer.dispatcher.assignShard();
+        }
+    }
+
+    @Benchmark
+    public void submit(Engine engine, Producer producer, Counters counters) {
+        while (LoadBalancer.dispatcher.getQueuedRequests() > MAX_BACKLOG) {
+            Thread.onSpinWait();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadBalancer.submitRequest(RequestPool.acquire(random.nextInt(), 1 + random.nextInt(100)), producer.shard);
+    }
+}
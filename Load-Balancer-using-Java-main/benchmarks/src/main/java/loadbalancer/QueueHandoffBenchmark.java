@@ -0,0 +1,110 @@
+package loadbalancer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip hand-off latency between two threads through a pair of queues,
+ * the same hop a request makes from a dispatcher worker to a server thread.
+ * "RequestQueue" is the queue on the request path (offer/take with the server queue's
+ * -Dlb.queue.policy and -Dlb.sched.policy); the JDK queues are the baselines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueHandoffBenchmark {
+
+    @Param({"RequestQueue", "LinkedBlockingQueue", "ArrayBlockingQueue"})
+    public String queue;
+
+    private final UserRequest request = new UserRequest(0x0A000001, 42);
+    private BlockingQueue<UserRequest> ping;
+    private BlockingQueue<UserRequest> pong;
+    private RequestQueue requestPing;                       // null unless queue is RequestQueue
+    private RequestQueue requestPong;
+    private Thread echo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("RequestQueue".equals(queue)) {
+            requestPing = newRequestQueue();
+            requestPong = newRequestQueue();
+            echo = new Thread(() -> {
+                try {
+                    while (true) {
+                        hand(requestPong, requestPing.take());
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }, "Echo");
+        } else {
+            ping = newQueue();
+            pong = newQueue();
+            echo = new Thread(() -> {
+                try {
+                    while (true) {
+                        pong.put(ping.take());
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }, "Echo");
+        }
+        echo.setDaemon(true);
+        echo.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        echo.interrupt();
+    }
+
+    @Benchmark
+    public UserRequest roundTrip() throws InterruptedException {
+        if (requestPing != null) {
+            hand(requestPing, request);
+            return requestPong.take();
+        }
+        ping.put(request);
+        return pong.take();
+    }
+
+    /**
+     * Stamps the request as the dispatcher does, so CoDel measures this hop only.
+     */
+    private static void hand(RequestQueue queue, UserRequest request) {
+        request.setDispatchNanos(System.nanoTime());
+        if (!queue.offer(request)) {
+            throw new IllegalStateException("hand-off queue full");
+        }
+    }
+
+    private static RequestQueue newRequestQueue() {
+        return new RequestQueue(1024, AdmissionPolicy.configured(), SizeScheduler.configured(),
+                UserRequest::getDispatchNanos, shed -> {
+                    throw new IllegalStateException("hand-off request shed");
+                });
+    }
+
+    private BlockingQueue<UserRequest> newQueue() {
+        return "ArrayBlockingQueue".equals(queue) ? new ArrayBlockingQueue<>(1024) : new LinkedBlockingQueue<>();
+    }
+}
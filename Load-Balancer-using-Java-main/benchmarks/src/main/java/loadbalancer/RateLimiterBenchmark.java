@@ -0,0 +1,61 @@
+package loadbalancer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one per-client rate-limit check at ingress. "clients" distinct IPs are
+ * drawn at random from a table sized for a million; 1 is a single noisy client
+ * (every thread CASes the same bucket), 4000000 overflows the table so new clients
+ * keep evicting old ones. Run with -t N to add ingress threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlb.log.level=OFF"})
+public class RateLimiterBenchmark {
+
+    private static final int IPS = 1 << 22;              // enough draws to touch every client
+
+    @Param({"1", "10000", "1000000", "4000000"})
+    public int clients;
+
+    private RateLimiter limiter;
+    private int[] ips;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(100, 100, 1 << 20);
+        SplittableRandom random = new SplittableRandom(42);
+        ips = new int[IPS];
+        for (int i = 0; i < IPS; i++) {
+            ips[i] = 0x0A000000 + random.nextInt(clients);
+        }
+    }
+
+    @Benchmark
+    public boolean tryAcquire(Cursor cursor) {
+        int ip = ips[cursor.next++ & (IPS - 1)];
+        return limiter.tryAcquire(ip, System.nanoTime());
+    }
+}
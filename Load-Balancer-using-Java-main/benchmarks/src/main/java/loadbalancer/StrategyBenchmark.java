@@ -0,0 +1,73 @@
+package loadbalancer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one server selection for every built-in strategy across 1–1000 servers
+ * (Sticky: 1024 clients, so almost every pick is an affinity-table hit).
+ * Servers are created but not started; pending counts are pre-filled at random
+ * so load-aware strategies have something to compare.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyBenchmark {
+
+    private static final int REQUESTS = 1024;   // power of two
+
+    @Param({"RoundRobin", "LeastConnections", "IPHashing", "WeightedRoundRobin", "Maglev", "P2C", "PeakEWMA", "Sticky"})
+    public String strategy;
+
+    @Param({"1", "10", "100", "1000"})
+    public int servers;
+
+    private BalancingStrategy balancingStrategy;
+    private List<Server> serverList;
+    private UserRequest[] requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(42);
+        serverList = new ArrayList<>();
+        for (int i = 1; i <= servers; i++) {
+            Server s = new Server(i, 1 + random.nextInt(5));
+            int pending = random.nextInt(20);
+            for (int p = 0; p < pending; p++) {
+                s.addRequest(new UserRequest(0, 1));
+            }
+            serverList.add(s);
+        }
+        requests = new UserRequest[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            requests[i] = new UserRequest(random.nextInt(), 1 + random.nextInt(100));
+        }
+        balancingStrategy = BalancingStrategies.create(strategy);
+        balancingStrategy.onServersChanged(serverList);
+    }
+
+    @Benchmark
+    public Server select() {
+        UserRequest request = requests[next++ & (REQUESTS - 1)];
+        return balancingStrategy.select(request, serverList);
+    }
+}